@@ -0,0 +1,73 @@
+package chess;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.LongSupplier;
+
+// Warmup and measurement loop in the spirit of JMH: every operation result is folded into a sink so the
+// JIT can't drop the work, and allocation is read from the HotSpot per-thread counter (like -prof gc).
+public class BenchmarkHarness {
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationNanos;
+    private final String filter;
+    private long sink;
+
+    public BenchmarkHarness(int warmupIterations, int measurementIterations, long iterationMillis, String filter) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationNanos = iterationMillis * 1_000_000;
+        this.filter = filter;
+    }
+
+    public void run(String name, LongSupplier operation) {
+        if (filter != null && !name.contains(filter)) {
+            return;
+        }
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(operation);
+        }
+        double[] throughput = new double[measurementIterations];
+        long operations = 0;
+        long bytes = 0;
+        for (int i = 0; i < measurementIterations; i++) {
+            long allocatedBefore = allocatedBytes();
+            long[] result = iteration(operation);
+            bytes += allocatedBytes() - allocatedBefore;
+            operations += result[0];
+            throughput[i] = result[0] * 1e9 / result[1];
+        }
+        double mean = 0;
+        for (double value : throughput) {
+            mean += value / throughput.length;
+        }
+        double variance = 0;
+        for (double value : throughput) {
+            variance += (value - mean) * (value - mean) / throughput.length;
+        }
+        System.out.printf("%-56s %14.1f ops/s  +- %5.1f%%  %10.1f B/op%n", name, mean,
+                mean == 0 ? 0 : Math.sqrt(variance) * 100 / mean, (double) bytes / operations);
+    }
+
+    public long getSink() {
+        return sink;
+    }
+
+    private long[] iteration(LongSupplier operation) {
+        long operations = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < 64; i++) {
+                sink += operation.getAsLong();
+            }
+            operations += 64;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        return new long[] { operations, elapsed };
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
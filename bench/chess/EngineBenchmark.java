@@ -0,0 +1,115 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import boardgame.Position;
+import chess.Pieces.Bishop;
+import chess.Pieces.King;
+import chess.Pieces.Knight;
+import chess.Pieces.Pawn;
+import chess.Pieces.Queen;
+import chess.Pieces.Rook;
+
+// usage: EngineBenchmark [name filter] [--quick]
+public class EngineBenchmark {
+    private static final String[][] POSITIONS = {
+            { "middlegame/kiwipete", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1" },
+            { "middlegame/italian", "r1bq1rk1/pppp1ppp/2n2n2/2b1p3/2B1P3/2NP1N2/PPP2PPP/R1BQ1RK1 w - - 2 6" },
+            { "middlegame/open", "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10" },
+            { "endgame/rook-pawns", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1" },
+            { "endgame/queen-vs-rook", "8/8/3k4/8/3r4/8/3QK3/8 w - - 0 1" },
+            { "endgame/minor-pieces", "8/5pk1/6p1/3B4/2n5/6P1/5PK1/8 b - - 0 40" } };
+
+    private static final Class<?>[] PIECE_CLASSES = { Pawn.class, Knight.class, Bishop.class, Rook.class,
+            Queen.class, King.class };
+
+    public static void main(String[] args) {
+        String filter = null;
+        boolean quick = false;
+        for (String arg : args) {
+            if (arg.equals("--quick")) {
+                quick = true;
+            } else {
+                filter = arg;
+            }
+        }
+        BenchmarkHarness harness = quick ? new BenchmarkHarness(1, 2, 100, filter)
+                : new BenchmarkHarness(5, 10, 500, filter);
+
+        for (String[] position : POSITIONS) {
+            String name = position[0];
+            String fen = position[1];
+            ChessMatch match = new ChessMatch(fen);
+            ChessPiece[][] pieces = match.getPieces();
+
+            for (Class<?> pieceClass : PIECE_CLASSES) {
+                List<ChessPiece> sameClass = new ArrayList<>();
+                for (ChessPiece[] row : pieces) {
+                    for (ChessPiece piece : row) {
+                        if (piece != null && piece.getClass() == pieceClass) {
+                            sameClass.add(piece);
+                        }
+                    }
+                }
+                if (sameClass.isEmpty()) {
+                    continue;
+                }
+                ChessPiece[] array = sameClass.toArray(new ChessPiece[0]);
+                harness.run(name + " " + pieceClass.getSimpleName() + ".possibleMoves", () -> {
+                    long result = 0;
+                    for (ChessPiece piece : array) {
+                        result += piece.possibleMoves().length;
+                    }
+                    return result;
+                });
+                harness.run(name + " " + pieceClass.getSimpleName() + ".possibleTargets", () -> {
+                    long result = 0;
+                    for (ChessPiece piece : array) {
+                        result += piece.possibleTargets();
+                    }
+                    return result;
+                });
+            }
+
+            int[] legalMoves = new int[256];
+            int count = match.snapshot().generateLegalMoves(legalMoves, 0);
+            int[] next = { 0 };
+            harness.run(name + " ChessMatch.perfomeChessMove+takeBack", () -> {
+                int move = legalMoves[next[0]++ % count];
+                ChessPiece captured = match.perfomeChessMove(
+                        ChessPosition.fromPosition(toPosition(Move.from(move))),
+                        ChessPosition.fromPosition(toPosition(Move.to(move))));
+                match.takeBack();
+                return captured == null ? 0 : 1;
+            });
+            harness.run(name + " ChessMatch.testCheck", () -> match.testCheck(match.getCurrentPlayer()) ? 1 : 0);
+            harness.run(name + " ChessMatch.testCheckMate",
+                    () -> match.testCheckMate(match.getCurrentPlayer()) ? 1 : 0);
+            harness.run(name + " ChessMatch.getPieces", () -> match.getPieces().length);
+
+            BitBoard bitBoard = match.snapshot();
+            BitBoard decoded = new BitBoard();
+            byte[] packed = new byte[PackedPosition.BYTES];
+            harness.run(name + " PackedPosition.encode", () -> {
+                PackedPosition.encode(bitBoard, packed, 0);
+                return packed[31];
+            });
+            harness.run(name + " PackedPosition.decode", () -> {
+                PackedPosition.decode(packed, 0, decoded);
+                return decoded.getKey();
+            });
+            harness.run(name + " Fen.toFen", () -> Fen.toFen(bitBoard).length());
+        }
+
+        Position position = new Position(3, 4);
+        ChessPosition chessPosition = new ChessPosition('e', 4);
+        harness.run("ChessPosition.toPosition", () -> chessPosition.toPosition().getRow());
+        harness.run("ChessPosition.fromPosition", () -> ChessPosition.fromPosition(position).getRow());
+        System.out.println("(sink " + harness.getSink() + ")");
+    }
+
+    private static Position toPosition(int square) {
+        return new Position(BitBoard.row(square), BitBoard.column(square));
+    }
+}
@@ -0,0 +1,123 @@
+package chess.Storage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import chess.BitBoard;
+import chess.Fen;
+
+// Builds a database of random games and measures the build throughput, then the latency of queries for
+// positions the games went through, and how fast the hits of a crowded position stream back.
+// usage: GameDatabaseBenchmark [games] [run entries] [directory]
+public class GameDatabaseBenchmark {
+    private static final int PLIES = 60;
+    private static final int QUERIES = 100_000;
+    private static final String[] RESULTS = { "1-0", "0-1", "1/2-1/2", "*" };
+
+    public static void main(String[] args) throws IOException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int runEntries = args.length > 1 ? Integer.parseInt(args[1]) : 1 << 20;
+        Path directory = args.length > 2 ? Paths.get(args[2]) : Files.createTempDirectory("games");
+        try {
+            run(directory, games, runEntries);
+        } finally {
+            if (args.length <= 2) {
+                try (Stream<Path> files = Files.walk(directory)) {
+                    files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+                }
+            }
+        }
+    }
+
+    private static void run(Path directory, int games, int runEntries) throws IOException {
+        Random random = new Random(42);
+        int[][] moves = new int[games][];
+        long[] samples = new long[games];
+        for (int g = 0; g < games; g++) {
+            moves[g] = randomGame(random);
+            samples[g] = keyAt(moves[g], random.nextInt(moves[g].length + 1));
+        }
+
+        long start = System.nanoTime();
+        GameDatabaseBuilder builder = new GameDatabaseBuilder(directory, runEntries);
+        for (int g = 0; g < games; g++) {
+            builder.add(null, moves[g], moves[g].length, RESULTS[g % RESULTS.length]);
+        }
+        long merge = System.nanoTime();
+        builder.finish();
+        long end = System.nanoTime();
+        System.out.printf("built %,d games, %,d entries from %d runs in %.2f s (add %.2f s, merge %.2f s), "
+                + "%,.0f games/s, %,.0f entries/s%n", builder.getGames(), builder.getEntries(), builder.getRuns(),
+                (end - start) / 1e9, (merge - start) / 1e9, (end - merge) / 1e9, games / ((end - start) / 1e9),
+                builder.getEntries() / ((end - start) / 1e9));
+
+        try (GameDatabase database = GameDatabase.open(directory)) {
+            // a query here is the search and reading every hit
+            long[] latencies = new long[QUERIES];
+            long hits = 0;
+            for (int round = 0; round < 2; round++) {
+                hits = 0;
+                for (int i = 0; i < QUERIES; i++) {
+                    long key = samples[random.nextInt(games)];
+                    long queryStart = System.nanoTime();
+                    GameDatabase.Cursor cursor = database.query(key);
+                    while (cursor.next()) {
+                        hits++;
+                    }
+                    latencies[i] = System.nanoTime() - queryStart;
+                }
+            }
+            Arrays.sort(latencies);
+            System.out.printf("%,d queries, %.1f hits each: p50 %.1f us, p99 %.1f us, max %.1f us%n", QUERIES,
+                    (double) hits / QUERIES, latencies[QUERIES / 2] / 1e3, latencies[QUERIES * 99 / 100] / 1e3,
+                    latencies[QUERIES - 1] / 1e3);
+
+            long initial = keyAt(new int[0], 0);
+            long streamStart = System.nanoTime();
+            GameDatabase.Cursor cursor = database.query(initial);
+            cursor.next();
+            long first = System.nanoTime() - streamStart;
+            long count = 1;
+            while (cursor.next()) {
+                count++;
+            }
+            long all = System.nanoTime() - streamStart;
+            System.out.printf("initial position: first of %,d hits after %.1f us, all after %.2f ms, "
+                    + "%,.0f hits/s%n", count, first / 1e3, all / 1e6, count / (all / 1e9));
+        }
+    }
+
+    // a random legal game, moves chosen towards the front of the list so openings are shared as in real games
+    private static int[] randomGame(Random random) {
+        BitBoard bitBoard = new BitBoard();
+        Fen.load(Fen.INITIAL, bitBoard);
+        int[] legal = new int[256];
+        int[] moves = new int[PLIES];
+        int count = 0;
+        while (count < PLIES) {
+            int legalCount = bitBoard.generateLegalMoves(legal, 0);
+            if (legalCount == 0) {
+                break;
+            }
+            int index = Math.min(legalCount - 1, (int) (-Math.log(1 - random.nextDouble()) * (1 + count / 4)));
+            moves[count++] = legal[index];
+            bitBoard.makeMove(legal[index]);
+        }
+        return Arrays.copyOf(moves, count);
+    }
+
+    private static long keyAt(int[] moves, int ply) {
+        BitBoard bitBoard = new BitBoard();
+        Fen.load(Fen.INITIAL, bitBoard);
+        for (int i = 0; i < ply; i++) {
+            bitBoard.makeMove(moves[i]);
+        }
+        return bitBoard.getKey();
+    }
+}
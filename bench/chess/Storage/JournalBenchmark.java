@@ -0,0 +1,124 @@
+package chess.Storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import chess.BitBoard;
+import chess.Fen;
+import chess.Move;
+import chess.PackedPosition;
+
+// Writes a journal of random games as a host that crashed would leave it: the games of the last block are
+// halfway through, the others have ended except a fraction abandoned without being detached. Then measures
+// how long recovery takes to rebuild the unfinished ones.
+// usage: JournalBenchmark [games] [plies] [abandoned fraction] [directory]
+public class JournalBenchmark {
+    // distinct games, the journal repeats them under different ids
+    private static final int PATTERNS = 1000;
+    // games written side by side, as a host with this many matches open would
+    private static final int CONCURRENT = 1000;
+
+    public static void main(String[] args) throws IOException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int plies = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+        double abandoned = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+        Path directory = args.length > 3 ? Paths.get(args[3]) : Files.createTempDirectory("journal");
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        try {
+            run(directory, games, plies, abandoned, threads);
+        } finally {
+            if (args.length <= 3) {
+                try (Stream<Path> files = Files.walk(directory)) {
+                    files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+                }
+            }
+        }
+    }
+
+    private static void run(Path directory, int games, int plies, double abandoned, int threads)
+            throws IOException {
+        int[][] patterns = randomGames(plies, new Random(42));
+        BitBoard initial = new BitBoard();
+        Fen.load(Fen.INITIAL, initial);
+        ByteBuffer packed = ByteBuffer.allocate(PackedPosition.BYTES);
+        PackedPosition.encode(initial, packed, 0);
+        int abandonedEvery = abandoned > 0 ? (int) Math.round(1 / abandoned) : 0;
+
+        long start = System.nanoTime();
+        long records;
+        int segments;
+        try (MoveJournal journal = MoveJournal.open(directory, new MoveJournal.Options())) {
+            for (int first = 0; first < games; first += CONCURRENT) {
+                int last = Math.min(games, first + CONCURRENT);
+                boolean crashed = last == games;
+                for (int id = first; id < last; id++) {
+                    journal.appendStart(id, packed);
+                }
+                for (int ply = 0; ply < (crashed ? plies / 2 : plies); ply++) {
+                    for (int id = first; id < last; id++) {
+                        int[] pattern = patterns[id % PATTERNS];
+                        if (ply < pattern.length) {
+                            int word = pattern[ply];
+                            journal.append(id, MoveJournal.type(word), word >>> 16 & 0xFF, word >>> 8 & 0xFF,
+                                    word & 0xFF);
+                        }
+                    }
+                }
+                for (int id = first; id < last; id++) {
+                    if (!crashed && (abandonedEvery == 0 || id % abandonedEvery != 0)) {
+                        journal.append(id, MoveJournal.END, 0, 0, 0);
+                    }
+                }
+            }
+            records = journal.getRecords();
+            segments = journal.getSegments();
+        }
+        double writeSeconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("wrote %,d games, %,d records (%,d MB) in %.2f s, %,.0f records/s, %d segments kept%n",
+                games, records, records * MoveJournal.RECORD_BYTES >> 20, writeSeconds, records / writeSeconds,
+                segments);
+
+        MoveJournal.Recovery recovery = MoveJournal.recover(directory, threads);
+        System.out.printf("recovered %,d unfinished games (%,d ended, %,d failed) from %,d records, "
+                + "%,d replayed, in %.2f s on %d threads%n", recovery.getMatches().size(),
+                recovery.getEndedMatches(), recovery.getFailedMatches().size(), recovery.getRecords(),
+                recovery.getReplayedRecords(), recovery.getElapsedNanos() / 1e9, threads);
+    }
+
+    // the journal words of random legal games, a promotion adds a PROMOTION record after its move
+    private static int[][] randomGames(int plies, Random random) {
+        int[][] games = new int[PATTERNS][];
+        int[] moves = new int[256];
+        for (int g = 0; g < PATTERNS; g++) {
+            BitBoard bitBoard = new BitBoard();
+            Fen.load(Fen.INITIAL, bitBoard);
+            int[] words = new int[plies];
+            int count = 0;
+            while (count < plies) {
+                int legal = bitBoard.generateLegalMoves(moves, 0);
+                if (legal == 0) {
+                    break;
+                }
+                int move = moves[random.nextInt(legal)];
+                if (Move.isPromotion(move) && count + 2 > plies) {
+                    break;
+                }
+                words[count++] = MoveJournal.MOVE << 24 | Move.from(move) << 16 | Move.to(move) << 8;
+                if (Move.isPromotion(move)) {
+                    words[count++] = MoveJournal.PROMOTION << 24 | Move.promotionType(move);
+                }
+                bitBoard.makeMove(move);
+            }
+            games[g] = Arrays.copyOf(words, count);
+        }
+        return games;
+    }
+}
@@ -1,5 +1,7 @@
 package application;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.InputMismatchException;
 import java.util.List;
@@ -9,12 +11,29 @@ import chess.ChessException;
 import chess.ChessMatch;
 import chess.ChessPiece;
 import chess.ChessPosition;
+import chess.Move;
+import chess.Engine.Bot;
+import chess.Engine.Tablebase;
+import chess.Storage.OpeningBook;
 
 public class App {
-    public static void main(String[] args) {
+    // usage: App [--engine [milliseconds per move]] [--book file] [--tablebases directory], the engine plays
+    // Black and ponders on the player's time
+    public static void main(String[] args) throws IOException {
         Scanner scanner = new Scanner(System.in);
         ChessMatch chessMatch = new ChessMatch();
         List<ChessPiece> capturedChessPieces = new ArrayList<>();
+        Bot bot = null;
+        if (args.length > 0 && args[0].equals("--engine")) {
+            bot = new Bot(64, args.length > 1 && !args[1].startsWith("--") ? Long.parseLong(args[1]) : 1000);
+            for (int i = 1; i + 1 < args.length; i++) {
+                if (args[i].equals("--book")) {
+                    bot.setOpeningBook(OpeningBook.open(Paths.get(args[i + 1])));
+                } else if (args[i].equals("--tablebases")) {
+                    bot.setTablebase(Tablebase.open(Paths.get(args[i + 1])));
+                }
+            }
+        }
         while (!chessMatch.isCheckmate()) {
             try {
                 UI.clearScreen();
@@ -42,6 +61,9 @@ public class App {
                     }
                     chessMatch.replacePrometedPiece(pieceType);
                 }
+                if (bot != null && !chessMatch.isCheckmate()) {
+                    playEngineMove(chessMatch, bot, capturedChessPieces);
+                }
             } catch (ChessException exception) {
                 System.out.println(exception.getMessage());
                 scanner.nextLine();
@@ -52,8 +74,29 @@ public class App {
             }
 
         }
+        if (bot != null) {
+            bot.stopPondering();
+        }
         UI.clearScreen();
         UI.printMatch(chessMatch, capturedChessPieces);
 
     }
+
+    private static void playEngineMove(ChessMatch chessMatch, Bot bot, List<ChessPiece> capturedChessPieces) {
+        int move = bot.think(chessMatch);
+        if (move == Move.NONE) {
+            return;
+        }
+        ChessPiece capturedPiece = chessMatch.perfomeChessMove(bot.getLastResult().getSourcePosition(),
+                bot.getLastResult().getTargetPosition());
+        if (capturedPiece != null) {
+            capturedChessPieces.add(capturedPiece);
+        }
+        if (chessMatch.getPrometed() != null) {
+            chessMatch.replacePrometedPiece(String.valueOf("PNBRQK".charAt(Move.promotionType(move))));
+        }
+        if (!chessMatch.isCheckmate()) {
+            bot.ponder(chessMatch);
+        }
+    }
 }
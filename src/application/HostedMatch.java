@@ -0,0 +1,75 @@
+package application;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import chess.ChessMatch;
+
+// A match with its own mailbox. Commands run one at a time in submission order, on whichever pool thread
+// drains the mailbox, so the match is never touched by two threads at once and needs no lock of its own.
+class HostedMatch {
+    // commands run per turn on a pool thread before it moves on, so a busy match can't starve the others
+    private static final int BATCH = 32;
+
+    private final long id;
+    private final ChessMatch match;
+    private final Executor executor;
+    private final Queue<Runnable> mailbox = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    HostedMatch(long id, ChessMatch match, Executor executor) {
+        this.id = id;
+        this.match = match;
+        this.executor = executor;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    <T> CompletableFuture<T> submit(Function<ChessMatch, T> command) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        mailbox.add(() -> {
+            try {
+                result.complete(command.apply(match));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            } catch (Error e) {
+                // the caller still gets an answer, the error goes on to the pool thread
+                result.completeExceptionally(e);
+                throw e;
+            }
+        });
+        schedule();
+        return result;
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            for (int i = 0; i < BATCH; i++) {
+                Runnable command = mailbox.poll();
+                if (command == null) {
+                    break;
+                }
+                command.run();
+            }
+        } finally {
+            // cleared even when a command throws, or the mailbox would never be drained again
+            scheduled.set(false);
+            // a command added after the last poll but before the flag was cleared would otherwise wait forever
+            if (!mailbox.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package application;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import chess.BitBoard;
+import chess.ChessMatch;
+import chess.ChessPosition;
+import chess.Move;
+
+// Simulates many clients, each playing random legal moves in its own hosted match and sending the next move
+// as soon as the previous one is answered. Reports sustained moves/second and the move latency percentiles,
+// measured from submission to completion so time spent queued in the mailbox counts. Replies are handled on a
+// client thread of their own, like a network thread would, so the next move queues behind the other matches
+// instead of being run by the same drain.
+public class LoadGenerator {
+    // a game this long is abandoned and replaced, random games rarely end by themselves
+    private static final int MAX_TURNS = 200;
+
+    private final MatchHost host;
+    private final ExecutorService client = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "load-client");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final AtomicLong moves = new AtomicLong();
+    private final AtomicLong finishedGames = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    // the first failure is kept to be shown, the others are only counted
+    private final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+    private final AtomicInteger activePlayers = new AtomicInteger();
+    private volatile boolean running = true;
+
+    public LoadGenerator(MatchHost host) {
+        this.host = host;
+    }
+
+    public void start(int games, long seed) {
+        SplittableRandom seeds = new SplittableRandom(seed);
+        for (int i = 0; i < games; i++) {
+            activePlayers.incrementAndGet();
+            new Player(seeds.split()).next();
+        }
+    }
+
+    // stops sending moves and waits for the ones in flight
+    public void stop() throws InterruptedException {
+        running = false;
+        while (activePlayers.get() > 0) {
+            Thread.sleep(10);
+        }
+        client.shutdown();
+    }
+
+    // starts a new measurement window
+    public void reset() {
+        latencies.reset();
+        moves.set(0);
+        finishedGames.set(0);
+        failures.set(0);
+        firstFailure.set(null);
+    }
+
+    private class Player {
+        private final SplittableRandom random;
+        private final int[] buffer = new int[256];
+        private long id = host.createMatch();
+
+        Player(SplittableRandom random) {
+            this.random = random;
+        }
+
+        void next() {
+            if (!running) {
+                host.closeMatch(id);
+                activePlayers.decrementAndGet();
+                return;
+            }
+            long start = System.nanoTime();
+            // timed where the host completes the reply, only the follow-up waits for the client thread
+            host.submit(id, this::playRandomMove).whenComplete((gameOver, failure) -> {
+                latencies.record(System.nanoTime() - start);
+                client.execute(() -> handleReply(gameOver, failure));
+            });
+        }
+
+        private void handleReply(Boolean gameOver, Throwable failure) {
+            if (failure != null) {
+                failures.incrementAndGet();
+                firstFailure.compareAndSet(null, failure);
+                gameOver = true;
+            } else {
+                moves.incrementAndGet();
+            }
+            if (gameOver) {
+                host.closeMatch(id);
+                id = host.createMatch();
+                finishedGames.incrementAndGet();
+            }
+            next();
+        }
+
+        // runs inside the match's mailbox, true when the game is over
+        private boolean playRandomMove(ChessMatch match) {
+            int count = match.legalMoves(buffer, 0);
+            if (count == 0 || match.getTurn() > MAX_TURNS) {
+                return true;
+            }
+            int move = buffer[random.nextInt(count)];
+            match.perfomeChessMove(toChessPosition(Move.from(move)), toChessPosition(Move.to(move)));
+            if (match.getPrometed() != null) {
+                match.replacePrometedPiece(String.valueOf("PNBRQK".charAt(Move.promotionType(move))));
+            }
+            return match.isCheckmate();
+        }
+    }
+
+    private static ChessPosition toChessPosition(int square) {
+        return new ChessPosition((char) ('a' + BitBoard.column(square)), 8 - BitBoard.row(square));
+    }
+
+    // usage: LoadGenerator [games] [seconds] [threads]
+    public static void main(String[] args) throws InterruptedException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        try (MatchHost host = new MatchHost(threads)) {
+            LoadGenerator generator = new LoadGenerator(host);
+            generator.start(games, 42);
+            // the first seconds only warm up the JIT
+            Thread.sleep(Math.min(2000, seconds * 200L));
+            generator.reset();
+            long start = System.nanoTime();
+            Thread.sleep(seconds * 1000L);
+            long moves = generator.moves.get();
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            generator.stop();
+            LatencyHistogram latencies = generator.latencies;
+            System.out.printf("games %,d  threads %d  moves %,d  moves/second %,.0f  finished games %,d%n", games,
+                    threads, moves, moves / elapsed, generator.finishedGames.get());
+            System.out.printf("latency us  p50 %,d  p99 %,d  p99.9 %,d%n", latencies.percentile(50) / 1000,
+                    latencies.percentile(99) / 1000, latencies.percentile(99.9) / 1000);
+            if (generator.failures.get() > 0) {
+                System.out.printf("failed moves %,d, the first one:%n", generator.failures.get());
+                generator.firstFailure.get().printStackTrace(System.out);
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package application;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import chess.ChessMatch;
+import chess.ChessPiece;
+import chess.ChessPosition;
+
+// Hosts many matches in one JVM. Each match has a mailbox and runs its commands in order, while commands
+// for different matches run in parallel on a shared pool. There is no global lock, the registry is a
+// concurrent map and a match's state is only ever touched from its own mailbox.
+public class MatchHost implements AutoCloseable {
+    private final ConcurrentHashMap<Long, HostedMatch> matches = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final ExecutorService executor;
+
+    public MatchHost(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("A match host needs at least one thread");
+        }
+        AtomicInteger count = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "match-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public long createMatch() {
+        return register(new ChessMatch());
+    }
+
+    public long createMatch(String fen) {
+        return register(new ChessMatch(fen));
+    }
+
+    // runs the command on the match after every command submitted to it before
+    public <T> CompletableFuture<T> submit(long id, Function<ChessMatch, T> command) {
+        HostedMatch match = matches.get(id);
+        if (match == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("There is no match " + id));
+        }
+        return match.submit(command);
+    }
+
+    public CompletableFuture<ChessPiece> move(long id, ChessPosition source, ChessPosition target) {
+        return submit(id, match -> match.perfomeChessMove(source, target));
+    }
+
+    // commands already queued still run, new ones are refused
+    public boolean closeMatch(long id) {
+        return matches.remove(id) != null;
+    }
+
+    public int size() {
+        return matches.size();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long register(ChessMatch match) {
+        long id = nextId.getAndIncrement();
+        matches.put(id, new HostedMatch(id, match, executor));
+        return id;
+    }
+}
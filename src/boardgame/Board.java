@@ -37,7 +37,7 @@ public class Board {
     }
 
     public void placePiece(Piece piece, Position position) {
-        if (thereIsAPiece(position)) {
+        if (piece(position) != null) {
             throw new BoardException("There is already a piece on position " + position);
         }
         pieces[position.getRow()][position.getColumn()] = piece;
@@ -57,12 +57,12 @@ public class Board {
         return aux;
     }
 
-    public Boolean positionExists(int row, int column) {
+    public boolean positionExists(int row, int column) {
         return row >= 0 && row < rows && column >= 0 && column < columns;
 
     }
 
-    public Boolean positionExists(Position position) {
+    public boolean positionExists(Position position) {
         return positionExists(position.getRow(), position.getColumn());
     }
 
@@ -13,21 +13,25 @@ public abstract class Piece {
         return board;
     }
 
-    public abstract boolean[][] possibleMoves();
-    public boolean possibleMove(Position position){
-        return possibleMoves()[position.getRow()][position.getColumn()];
-    }
+    // one bit per target square, indexed row * columns + column
+    public abstract long possibleTargets();
 
-    public boolean isThereAnyPossibleMove(){
-        boolean [][] matrix = possibleMoves();
-        for (int i = 0; i < matrix.length; i++) {
-            for (int j = 0; j < matrix[i].length; j++) {
-                if(matrix[i][j]){
-                    return true;
-                }
-            }
+    public boolean[][] possibleMoves() {
+        boolean[][] matrix = new boolean[board.getRows()][board.getColumns()];
+        for (long targets = possibleTargets(); targets != 0; targets &= targets - 1) {
+            int square = Long.numberOfTrailingZeros(targets);
+            matrix[square / board.getColumns()][square % board.getColumns()] = true;
         }
-        return false;
+        return matrix;
+    }
+
+    public boolean possibleMove(Position position) {
+        int square = position.getRow() * board.getColumns() + position.getColumn();
+        return (possibleTargets() & (1L << square)) != 0;
+    }
+
+    public boolean isThereAnyPossibleMove() {
+        return possibleTargets() != 0;
     }
 
 }
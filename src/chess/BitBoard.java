@@ -0,0 +1,624 @@
+package chess;
+
+import java.util.Arrays;
+
+import boardgame.Position;
+
+public class BitBoard {
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+
+    public static final int EMPTY = -1;
+
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+    public static final int ALL_CASTLING = 15;
+
+    private static final int[] CASTLING_MASKS = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_MASKS, ALL_CASTLING);
+        CASTLING_MASKS[square(7, 4)] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_MASKS[square(7, 7)] &= ~WHITE_KINGSIDE;
+        CASTLING_MASKS[square(7, 0)] &= ~WHITE_QUEENSIDE;
+        CASTLING_MASKS[square(0, 4)] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        CASTLING_MASKS[square(0, 7)] &= ~BLACK_KINGSIDE;
+        CASTLING_MASKS[square(0, 0)] &= ~BLACK_QUEENSIDE;
+    }
+
+    // one mask per piece code (colour * 6 + type), square index = row * 8 + column (a8 = 0, h1 = 63)
+    private long[] pieces = new long[12];
+    private long[] colors = new long[2];
+    private long occupied;
+    private int[] squares = new int[64];
+    private long[] checkers = new long[2];
+
+    private int sideToMove = WHITE;
+    private int castlingRights;
+    private int enPassantSquare = EMPTY;
+    private int halfmoveClock;
+    private int fullmoveNumber = 1;
+    private long key = Zobrist.castling(0);
+    // hash of the pawns alone, 0 when there are none
+    private long pawnKey;
+    // piece-square sums from White's point of view and the game phase, see Evaluation
+    private int middlegameScore;
+    private int endgameScore;
+    private int phase;
+
+    // undo records: move | captured + 1 << 32 | castling << 36 | en passant + 1 << 40 | halfmove clock << 47
+    private long[] history = new long[512];
+    private long[] keyHistory = new long[512];
+    private int ply;
+    private int[] scratch = new int[256];
+
+    public BitBoard() {
+        Arrays.fill(squares, EMPTY);
+    }
+
+    // independent copy, including the undo stack, for searches that must not touch the original
+    public BitBoard(BitBoard other) {
+        pieces = other.pieces.clone();
+        colors = other.colors.clone();
+        occupied = other.occupied;
+        squares = other.squares.clone();
+        checkers = other.checkers.clone();
+        sideToMove = other.sideToMove;
+        castlingRights = other.castlingRights;
+        enPassantSquare = other.enPassantSquare;
+        halfmoveClock = other.halfmoveClock;
+        fullmoveNumber = other.fullmoveNumber;
+        key = other.key;
+        pawnKey = other.pawnKey;
+        middlegameScore = other.middlegameScore;
+        endgameScore = other.endgameScore;
+        phase = other.phase;
+        history = other.history.clone();
+        keyHistory = other.keyHistory.clone();
+        ply = other.ply;
+    }
+
+    public void clear() {
+        Arrays.fill(pieces, 0);
+        Arrays.fill(colors, 0);
+        occupied = 0;
+        Arrays.fill(squares, EMPTY);
+        sideToMove = WHITE;
+        castlingRights = 0;
+        enPassantSquare = EMPTY;
+        halfmoveClock = 0;
+        fullmoveNumber = 1;
+        key = Zobrist.castling(0);
+        pawnKey = 0;
+        middlegameScore = 0;
+        endgameScore = 0;
+        phase = 0;
+        ply = 0;
+        updateAttacks();
+    }
+
+    public static int square(int row, int column) {
+        return (row << 3) | column;
+    }
+
+    public static int square(Position position) {
+        return square(position.getRow(), position.getColumn());
+    }
+
+    public static int row(int square) {
+        return square >>> 3;
+    }
+
+    public static int column(int square) {
+        return square & 7;
+    }
+
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    public static int code(int color, int type) {
+        return color * 6 + type;
+    }
+
+    public static int colorOf(int code) {
+        return code < 6 ? WHITE : BLACK;
+    }
+
+    public static int typeOf(int code) {
+        return code < 6 ? code : code - 6;
+    }
+
+    public static int opponent(int color) {
+        return color ^ 1;
+    }
+
+    public static String squareName(int square) {
+        return "" + (char) ('a' + column(square)) + (8 - row(square));
+    }
+
+    public static int colorIndex(Color color) {
+        return color == Color.WHITE ? WHITE : BLACK;
+    }
+
+    public static Color toColor(int color) {
+        return color == WHITE ? Color.WHITE : Color.BLACK;
+    }
+
+    public void place(int code, int square) {
+        long bit = bit(square);
+        pieces[code] |= bit;
+        colors[colorOf(code)] |= bit;
+        occupied |= bit;
+        squares[square] = code;
+        key ^= Zobrist.piece(code, square);
+        if (typeOf(code) == PAWN) {
+            pawnKey ^= Zobrist.piece(code, square);
+        }
+        middlegameScore += Evaluation.middlegame(code, square);
+        endgameScore += Evaluation.endgame(code, square);
+        phase += Evaluation.phase(code);
+    }
+
+    public int remove(int square) {
+        int code = squares[square];
+        if (code != EMPTY) {
+            long bit = bit(square);
+            pieces[code] &= ~bit;
+            colors[colorOf(code)] &= ~bit;
+            occupied &= ~bit;
+            squares[square] = EMPTY;
+            key ^= Zobrist.piece(code, square);
+            if (typeOf(code) == PAWN) {
+                pawnKey ^= Zobrist.piece(code, square);
+            }
+            middlegameScore -= Evaluation.middlegame(code, square);
+            endgameScore -= Evaluation.endgame(code, square);
+            phase -= Evaluation.phase(code);
+        }
+        return code;
+    }
+
+    public int pieceAt(int square) {
+        return squares[square];
+    }
+
+    public boolean isOccupied(int square) {
+        return (occupied & bit(square)) != 0;
+    }
+
+    public long getOccupied() {
+        return occupied;
+    }
+
+    public long getColor(int color) {
+        return colors[color];
+    }
+
+    public long getPieces(int color, int type) {
+        return pieces[code(color, type)];
+    }
+
+    public int kingSquare(int color) {
+        long king = pieces[code(color, KING)];
+        if (king == 0) {
+            throw new IllegalStateException("There is no " + toColor(color) + " King on the board");
+        }
+        return Long.numberOfTrailingZeros(king);
+    }
+
+    public long attackersTo(int square, long occupied) {
+        long bishopsQueens = pieces[code(WHITE, BISHOP)] | pieces[code(BLACK, BISHOP)] | pieces[code(WHITE, QUEEN)]
+                | pieces[code(BLACK, QUEEN)];
+        long rooksQueens = pieces[code(WHITE, ROOK)] | pieces[code(BLACK, ROOK)] | pieces[code(WHITE, QUEEN)]
+                | pieces[code(BLACK, QUEEN)];
+        return (Attacks.pawn(WHITE, square) & pieces[code(BLACK, PAWN)])
+                | (Attacks.pawn(BLACK, square) & pieces[code(WHITE, PAWN)])
+                | (Attacks.knight(square) & (pieces[code(WHITE, KNIGHT)] | pieces[code(BLACK, KNIGHT)]))
+                | (Attacks.king(square) & (pieces[code(WHITE, KING)] | pieces[code(BLACK, KING)]))
+                | (Attacks.bishop(square, occupied) & bishopsQueens)
+                | (Attacks.rook(square, occupied) & rooksQueens);
+    }
+
+    public boolean isSquareAttacked(int square, int byColor) {
+        return (attackersTo(square, occupied) & colors[byColor]) != 0;
+    }
+
+    // opponent pieces giving check to the king of the given colour
+    public long getCheckers(int color) {
+        return checkers[color];
+    }
+
+    // pieces of the given colour that shield their own king from an opponent slider, computed when asked
+    public long getPinned(int color) {
+        long king = pieces[code(color, KING)];
+        if (king == 0) {
+            return 0;
+        }
+        int kingSquare = Long.numberOfTrailingZeros(king);
+        int opponent = opponent(color);
+        long queens = pieces[code(opponent, QUEEN)];
+        long snipers = (Attacks.rook(kingSquare, 0) & (pieces[code(opponent, ROOK)] | queens))
+                | (Attacks.bishop(kingSquare, 0) & (pieces[code(opponent, BISHOP)] | queens));
+        long pinned = 0;
+        for (; snipers != 0; snipers &= snipers - 1) {
+            long blockers = Attacks.between(kingSquare, Long.numberOfTrailingZeros(snipers)) & occupied;
+            if (blockers != 0 && (blockers & (blockers - 1)) == 0) {
+                pinned |= blockers & colors[color];
+            }
+        }
+        return pinned;
+    }
+
+    // refreshes the checkers masks, must be called once the pieces of a move are in place
+    public void updateAttacks() {
+        for (int color = WHITE; color <= BLACK; color++) {
+            long king = pieces[code(color, KING)];
+            checkers[color] = king == 0 ? 0
+                    : attackersTo(Long.numberOfTrailingZeros(king), occupied) & colors[opponent(color)];
+        }
+    }
+
+    public int getSideToMove() {
+        return sideToMove;
+    }
+
+    public void setSideToMove(int sideToMove) {
+        if (sideToMove != this.sideToMove) {
+            key ^= Zobrist.side();
+        }
+        this.sideToMove = sideToMove;
+    }
+
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    public void setCastlingRights(int castlingRights) {
+        key ^= Zobrist.castling(this.castlingRights) ^ Zobrist.castling(castlingRights);
+        this.castlingRights = castlingRights;
+    }
+
+    // the square a pawn capturing en passant lands on, or EMPTY
+    public int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+
+    public void setEnPassantSquare(int enPassantSquare) {
+        key ^= Zobrist.enPassant(this.enPassantSquare) ^ Zobrist.enPassant(enPassantSquare);
+        this.enPassantSquare = enPassantSquare;
+    }
+
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public void setHalfmoveClock(int halfmoveClock) {
+        this.halfmoveClock = halfmoveClock;
+    }
+
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    public void setFullmoveNumber(int fullmoveNumber) {
+        this.fullmoveNumber = fullmoveNumber;
+    }
+
+    // Zobrist hash of the pieces, side to move, castling rights and en passant file
+    public long getKey() {
+        return key;
+    }
+
+    // changes only when a pawn moves, is captured or promotes
+    public long getPawnKey() {
+        return pawnKey;
+    }
+
+    public int getMiddlegameScore() {
+        return middlegameScore;
+    }
+
+    public int getEndgameScore() {
+        return endgameScore;
+    }
+
+    // 0 with only kings and pawns left, Evaluation.MAX_PHASE or more with all pieces on the board
+    public int getPhase() {
+        return phase;
+    }
+
+    // true when the position already occurred since the last capture or pawn move
+    public boolean isRepetition() {
+        for (int i = ply - 4; i >= 0 && i >= ply - halfmoveClock; i -= 2) {
+            if (keyHistory[i] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // number of moves on the undo stack
+    public int getPly() {
+        return ply;
+    }
+
+    public int lastMove() {
+        return ply == 0 ? Move.NONE : (int) history[ply - 1];
+    }
+
+    // infers the flags of a move given only its squares, promoting to a queen
+    public int toMove(int from, int to) {
+        int type = typeOf(squares[from]);
+        if (type == KING && Math.abs(column(to) - column(from)) == 2) {
+            return Move.of(from, to, Move.CASTLING);
+        }
+        if (type == PAWN) {
+            if (to == enPassantSquare) {
+                return Move.of(from, to, Move.EN_PASSANT);
+            }
+            if (row(to) == 0 || row(to) == 7) {
+                return Move.promotion(from, to, QUEEN);
+            }
+        }
+        return Move.of(from, to);
+    }
+
+    public void makeMove(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int flag = Move.flag(move);
+        int code = squares[from];
+        int captureSquare = flag == Move.EN_PASSANT ? enPassantCaptureSquare(to) : to;
+        int captured = squares[captureSquare];
+
+        if (ply == history.length) {
+            history = Arrays.copyOf(history, ply * 2);
+            keyHistory = Arrays.copyOf(keyHistory, ply * 2);
+        }
+        keyHistory[ply] = key;
+        history[ply++] = (move & 0xFFFFFFFFL) | ((long) (captured + 1) << 32) | ((long) castlingRights << 36)
+                | ((long) (enPassantSquare + 1) << 40) | ((long) halfmoveClock << 47);
+
+        if (captured != EMPTY) {
+            remove(captureSquare);
+        }
+        remove(from);
+        place(flag == Move.PROMOTION ? code(sideToMove, Move.promotionType(move)) : code, to);
+        if (flag == Move.CASTLING) {
+            int rookFrom = to > from ? to + 1 : to - 2;
+            int rookTo = to > from ? to - 1 : to + 1;
+            place(remove(rookFrom), rookTo);
+        }
+
+        key ^= Zobrist.castling(castlingRights) ^ Zobrist.enPassant(enPassantSquare) ^ Zobrist.side();
+        castlingRights &= CASTLING_MASKS[from] & CASTLING_MASKS[to];
+        // the en passant square is only kept when an opponent pawn can really capture, so equal positions hash equally
+        enPassantSquare = EMPTY;
+        if (typeOf(code) == PAWN && Math.abs(to - from) == 16
+                && (Attacks.pawn(sideToMove, (from + to) >>> 1) & pieces[code(opponent(sideToMove), PAWN)]) != 0) {
+            enPassantSquare = (from + to) >>> 1;
+        }
+        key ^= Zobrist.castling(castlingRights) ^ Zobrist.enPassant(enPassantSquare);
+        halfmoveClock = typeOf(code) == PAWN || captured != EMPTY ? 0 : halfmoveClock + 1;
+        if (sideToMove == BLACK) {
+            fullmoveNumber++;
+        }
+        sideToMove = opponent(sideToMove);
+        updateAttacks();
+    }
+
+    public void unmakeMove() {
+        long record = history[--ply];
+        int move = (int) record;
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int flag = Move.flag(move);
+        int captured = (int) ((record >>> 32) & 15) - 1;
+
+        sideToMove = opponent(sideToMove);
+        if (sideToMove == BLACK) {
+            fullmoveNumber--;
+        }
+        key ^= Zobrist.castling(castlingRights) ^ Zobrist.enPassant(enPassantSquare) ^ Zobrist.side();
+        castlingRights = (int) ((record >>> 36) & 15);
+        enPassantSquare = (int) ((record >>> 40) & 127) - 1;
+        key ^= Zobrist.castling(castlingRights) ^ Zobrist.enPassant(enPassantSquare);
+        halfmoveClock = (int) (record >>> 47);
+
+        if (flag == Move.CASTLING) {
+            int rookFrom = to > from ? to + 1 : to - 2;
+            int rookTo = to > from ? to - 1 : to + 1;
+            place(remove(rookTo), rookFrom);
+        }
+        int code = remove(to);
+        place(flag == Move.PROMOTION ? code(sideToMove, PAWN) : code, from);
+        if (captured != EMPTY) {
+            place(captured, flag == Move.EN_PASSANT ? enPassantCaptureSquare(to) : to);
+        }
+        updateAttacks();
+    }
+
+    // rewrites the promotion of the last move after the promoted piece has been replaced on the board
+    public void setPromotion(int type) {
+        int move = (int) history[ply - 1];
+        history[ply - 1] = (history[ply - 1] & ~0xFFFFFFFFL)
+                | (Move.promotion(Move.from(move), Move.to(move), type) & 0xFFFFFFFFL);
+    }
+
+    // the square of the pawn taken by an en passant capture landing on the given square
+    public int enPassantCaptureSquare(int to) {
+        return row(to) == 2 ? to + 8 : to - 8;
+    }
+
+    // the castling rights whose king and rook still stand on their starting squares
+    public int castlingRightsInPlace() {
+        int rights = 0;
+        for (int color = WHITE; color <= BLACK; color++) {
+            int row = color == WHITE ? 7 : 0;
+            long rooks = pieces[code(color, ROOK)];
+            if (pieces[code(color, KING)] != bit(square(row, 4))) {
+                continue;
+            }
+            if ((rooks & bit(square(row, 7))) != 0) {
+                rights |= color == WHITE ? WHITE_KINGSIDE : BLACK_KINGSIDE;
+            }
+            if ((rooks & bit(square(row, 0))) != 0) {
+                rights |= color == WHITE ? WHITE_QUEENSIDE : BLACK_QUEENSIDE;
+            }
+        }
+        return rights;
+    }
+
+    // king targets for castling, checking rights, rooks, empty squares and attacked transit squares
+    public long castlingTargets(int color) {
+        int them = opponent(color);
+        int row = color == WHITE ? 7 : 0;
+        int kingSquare = square(row, 4);
+        int kingside = color == WHITE ? WHITE_KINGSIDE : BLACK_KINGSIDE;
+        int queenside = color == WHITE ? WHITE_QUEENSIDE : BLACK_QUEENSIDE;
+        long rooks = pieces[code(color, ROOK)];
+        long targets = 0;
+        if (checkers[color] != 0 || pieces[code(color, KING)] != bit(kingSquare)) {
+            return 0;
+        }
+        if ((castlingRights & kingside) != 0 && (rooks & bit(kingSquare + 3)) != 0
+                && (occupied & Attacks.between(kingSquare, kingSquare + 3)) == 0
+                && !isSquareAttacked(kingSquare + 1, them) && !isSquareAttacked(kingSquare + 2, them)) {
+            targets |= bit(kingSquare + 2);
+        }
+        if ((castlingRights & queenside) != 0 && (rooks & bit(kingSquare - 4)) != 0
+                && (occupied & Attacks.between(kingSquare, kingSquare - 4)) == 0
+                && !isSquareAttacked(kingSquare - 1, them) && !isSquareAttacked(kingSquare - 2, them)) {
+            targets |= bit(kingSquare - 2);
+        }
+        return targets;
+    }
+
+    // writes the pseudo-legal moves of the side to move and returns the new end offset
+    public int generateMoves(int[] moves, int offset) {
+        int us = sideToMove;
+        long own = colors[us];
+        long enemy = colors[opponent(us)];
+        int forward = us == WHITE ? -8 : 8;
+        int startRow = us == WHITE ? 6 : 1;
+
+        for (long pawns = pieces[code(us, PAWN)]; pawns != 0; pawns &= pawns - 1) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            int to = from + forward;
+            if (squares[to] == EMPTY) {
+                offset = addPawnMove(moves, offset, from, to);
+                if (row(from) == startRow && squares[to + forward] == EMPTY) {
+                    moves[offset++] = Move.of(from, to + forward);
+                }
+            }
+            for (long captures = Attacks.pawn(us, from) & enemy; captures != 0; captures &= captures - 1) {
+                offset = addPawnMove(moves, offset, from, Long.numberOfTrailingZeros(captures));
+            }
+            if (enPassantSquare != EMPTY && (Attacks.pawn(us, from) & bit(enPassantSquare)) != 0) {
+                moves[offset++] = Move.of(from, enPassantSquare, Move.EN_PASSANT);
+            }
+        }
+        for (long knights = pieces[code(us, KNIGHT)]; knights != 0; knights &= knights - 1) {
+            int from = Long.numberOfTrailingZeros(knights);
+            offset = addMoves(moves, offset, from, Attacks.knight(from) & ~own);
+        }
+        for (long bishops = pieces[code(us, BISHOP)]; bishops != 0; bishops &= bishops - 1) {
+            int from = Long.numberOfTrailingZeros(bishops);
+            offset = addMoves(moves, offset, from, Attacks.bishop(from, occupied) & ~own);
+        }
+        for (long rooks = pieces[code(us, ROOK)]; rooks != 0; rooks &= rooks - 1) {
+            int from = Long.numberOfTrailingZeros(rooks);
+            offset = addMoves(moves, offset, from, Attacks.rook(from, occupied) & ~own);
+        }
+        for (long queens = pieces[code(us, QUEEN)]; queens != 0; queens &= queens - 1) {
+            int from = Long.numberOfTrailingZeros(queens);
+            offset = addMoves(moves, offset, from, Attacks.queen(from, occupied) & ~own);
+        }
+        int kingSquare = Long.numberOfTrailingZeros(pieces[code(us, KING)]);
+        if (kingSquare < 64) {
+            offset = addMoves(moves, offset, kingSquare, Attacks.king(kingSquare) & ~own);
+            for (long castling = castlingTargets(us); castling != 0; castling &= castling - 1) {
+                moves[offset++] = Move.of(kingSquare, Long.numberOfTrailingZeros(castling), Move.CASTLING);
+            }
+        }
+        return offset;
+    }
+
+    // writes the legal moves of the side to move and returns the new end offset
+    public int generateLegalMoves(int[] moves, int offset) {
+        int end = generateMoves(moves, offset);
+        long pinned = getPinned(sideToMove);
+        int legal = offset;
+        for (int i = offset; i < end; i++) {
+            if (isLegal(moves[i], pinned)) {
+                moves[legal++] = moves[i];
+            }
+        }
+        return legal;
+    }
+
+    // a pseudo-legal move is legal when it doesn't leave the mover's king attacked
+    public boolean isLegal(int move) {
+        return isLegal(move, getPinned(sideToMove));
+    }
+
+    // only moves that might expose the king are played out: out of check, a piece that isn't pinned can't,
+    // and a king step is legal when its target isn't attacked with the king gone from its square
+    private boolean isLegal(int move, long pinned) {
+        int mover = sideToMove;
+        int from = Move.from(move);
+        int flag = Move.flag(move);
+        if (checkers[mover] == 0 && flag != Move.EN_PASSANT && flag != Move.CASTLING) {
+            if (typeOf(squares[from]) == KING) {
+                return (attackersTo(Move.to(move), occupied ^ bit(from)) & colors[opponent(mover)]) == 0;
+            }
+            if ((pinned & bit(from)) == 0) {
+                return true;
+            }
+        }
+        makeMove(move);
+        boolean legal = checkers[mover] == 0;
+        unmakeMove();
+        return legal;
+    }
+
+    public boolean hasLegalMove() {
+        int end = generateMoves(scratch, 0);
+        long pinned = getPinned(sideToMove);
+        for (int i = 0; i < end; i++) {
+            if (isLegal(scratch[i], pinned)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int addMoves(int[] moves, int offset, int from, long targets) {
+        for (; targets != 0; targets &= targets - 1) {
+            moves[offset++] = Move.of(from, Long.numberOfTrailingZeros(targets));
+        }
+        return offset;
+    }
+
+    private static int addPawnMove(int[] moves, int offset, int from, int to) {
+        if (row(to) == 0 || row(to) == 7) {
+            moves[offset++] = Move.promotion(from, to, QUEEN);
+            moves[offset++] = Move.promotion(from, to, ROOK);
+            moves[offset++] = Move.promotion(from, to, BISHOP);
+            moves[offset++] = Move.promotion(from, to, KNIGHT);
+        } else {
+            moves[offset++] = Move.of(from, to);
+        }
+        return offset;
+    }
+}
@@ -0,0 +1,111 @@
+package chess;
+
+import java.util.Arrays;
+
+import boardgame.Board;
+import boardgame.BoardException;
+import boardgame.Piece;
+import boardgame.Position;
+
+public class ChessBoard extends Board {
+    private BitBoard bitBoard = new BitBoard();
+    private Position[] positions = new Position[64];
+    // Piece objects taken off the view by each move on the bitboard undo stack
+    private ChessPiece[] capturedPieces = new ChessPiece[512];
+    private ChessPiece[] promotedPawns = new ChessPiece[512];
+
+    public ChessBoard() {
+        super(8, 8);
+        for (int square = 0; square < 64; square++) {
+            positions[square] = new Position(BitBoard.row(square), BitBoard.column(square));
+        }
+    }
+
+    public BitBoard getBitBoard() {
+        return bitBoard;
+    }
+
+    public Piece piece(int square) {
+        return piece(BitBoard.row(square), BitBoard.column(square));
+    }
+
+    @Override
+    public void placePiece(Piece piece, Position position) {
+        super.placePiece(piece, position);
+        bitBoard.place(((ChessPiece) piece).getCode(), BitBoard.square(position));
+    }
+
+    @Override
+    public Piece removePiece(Position position) {
+        Piece piece = super.removePiece(position);
+        if (piece != null) {
+            bitBoard.remove(BitBoard.square(position));
+        }
+        return piece;
+    }
+
+    @Override
+    public boolean thereIsAPiece(Position position) {
+        if (!positionExists(position))
+            throw new BoardException("Position not on the board.");
+
+        return bitBoard.isOccupied(BitBoard.square(position));
+    }
+
+    // plays the move on the bitboards and mirrors it on the piece view, returning the captured piece
+    public ChessPiece makeMove(int move, ChessPiece promotedPiece) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int flag = Move.flag(move);
+        int captureSquare = flag == Move.EN_PASSANT ? bitBoard.enPassantCaptureSquare(to) : to;
+        bitBoard.makeMove(move);
+
+        int ply = bitBoard.getPly();
+        if (ply > capturedPieces.length) {
+            capturedPieces = Arrays.copyOf(capturedPieces, ply * 2);
+            promotedPawns = Arrays.copyOf(promotedPawns, ply * 2);
+        }
+        ChessPiece piece = (ChessPiece) super.removePiece(positions[from]);
+        ChessPiece capturedPiece = (ChessPiece) super.removePiece(positions[captureSquare]);
+        piece.increaseMoveCount();
+        capturedPieces[ply - 1] = capturedPiece;
+        promotedPawns[ply - 1] = flag == Move.PROMOTION ? piece : null;
+        super.placePiece(flag == Move.PROMOTION ? promotedPiece : piece, positions[to]);
+        if (flag == Move.CASTLING) {
+            ChessPiece rook = (ChessPiece) super.removePiece(positions[to > from ? to + 1 : to - 2]);
+            super.placePiece(rook, positions[to > from ? to - 1 : to + 1]);
+            rook.increaseMoveCount();
+        }
+        return capturedPiece;
+    }
+
+    // takes back the last move on both the bitboards and the piece view, returning the restored capture
+    public ChessPiece unmakeMove() {
+        int move = bitBoard.lastMove();
+        int ply = bitBoard.getPly();
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int flag = Move.flag(move);
+        bitBoard.unmakeMove();
+
+        if (flag == Move.CASTLING) {
+            ChessPiece rook = (ChessPiece) super.removePiece(positions[to > from ? to - 1 : to + 1]);
+            super.placePiece(rook, positions[to > from ? to + 1 : to - 2]);
+            rook.decreaseMoveCount();
+        }
+        ChessPiece piece = (ChessPiece) super.removePiece(positions[to]);
+        if (flag == Move.PROMOTION) {
+            piece = promotedPawns[ply - 1];
+            promotedPawns[ply - 1] = null;
+        }
+        piece.decreaseMoveCount();
+        super.placePiece(piece, positions[from]);
+        ChessPiece capturedPiece = capturedPieces[ply - 1];
+        capturedPieces[ply - 1] = null;
+        if (capturedPiece != null) {
+            int captureSquare = flag == Move.EN_PASSANT ? bitBoard.enPassantCaptureSquare(to) : to;
+            super.placePiece(capturedPiece, positions[captureSquare]);
+        }
+        return capturedPiece;
+    }
+}
@@ -2,11 +2,10 @@ package chess;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
-import boardgame.Board;
 import boardgame.Piece;
 import boardgame.Position;
+import chess.Engine.Tablebase;
 import chess.Pieces.Bishop;
 import chess.Pieces.King;
 import chess.Pieces.Knight;
@@ -15,23 +14,60 @@ import chess.Pieces.Queen;
 import chess.Pieces.Rook;
 
 public class ChessMatch {
-    private Board board;
+    private ChessBoard board;
     private int turn;
     private Color currentPlayer;
     private boolean check;
     private boolean checkmate;
     private ChessPiece enPassantVulnerable;
     private ChessPiece prometed;
-    private List<Piece> piecesOnTheBoard = new ArrayList<>();
     private List<Piece> capturedPieces = new ArrayList<>();
+    private MoveListener listener;
 
     public ChessMatch() {
-        board = new Board(8, 8);
+        board = new ChessBoard();
         turn = 1;
         currentPlayer = Color.WHITE;
         initialSetup();
     }
 
+    public ChessMatch(String fen) {
+        BitBoard position = new BitBoard();
+        Fen.load(fen, position);
+        setup(position);
+    }
+
+    // a match starting from a position written by PackedPosition
+    public ChessMatch(byte[] packed, int offset) {
+        BitBoard position = new BitBoard();
+        PackedPosition.decode(packed, offset, position);
+        setup(position);
+    }
+
+    private void setup(BitBoard position) {
+        board = new ChessBoard();
+        for (int square = 0; square < 64; square++) {
+            int code = position.pieceAt(square);
+            if (code != BitBoard.EMPTY) {
+                ChessPiece piece = newPiece(BitBoard.typeOf(code), BitBoard.toColor(BitBoard.colorOf(code)));
+                board.placePiece(piece, new Position(BitBoard.row(square), BitBoard.column(square)));
+            }
+        }
+        BitBoard bitBoard = board.getBitBoard();
+        bitBoard.setSideToMove(position.getSideToMove());
+        bitBoard.setCastlingRights(position.getCastlingRights());
+        bitBoard.setEnPassantSquare(position.getEnPassantSquare());
+        bitBoard.setHalfmoveClock(position.getHalfmoveClock());
+        bitBoard.setFullmoveNumber(position.getFullmoveNumber());
+        bitBoard.updateAttacks();
+
+        currentPlayer = BitBoard.toColor(bitBoard.getSideToMove());
+        turn = (bitBoard.getFullmoveNumber() - 1) * 2 + (currentPlayer == Color.WHITE ? 1 : 2);
+        check = testCheck(currentPlayer);
+        checkmate = testCheckMate(currentPlayer);
+        enPassantVulnerable = enPassantPawn();
+    }
+
     public int getTurn() {
         return turn;
     }
@@ -56,6 +92,46 @@ public class ChessMatch {
         return prometed;
     }
 
+    public long getZobristKey() {
+        return board.getBitBoard().getKey();
+    }
+
+    // static evaluation in centipawns, positive when White is better
+    public int getEvaluation() {
+        BitBoard bitBoard = board.getBitBoard();
+        int score = Evaluation.evaluate(bitBoard);
+        return bitBoard.getSideToMove() == BitBoard.WHITE ? score : -score;
+    }
+
+    // the tablebase value of the position, Tablebase.NOT_FOUND when its material isn't covered
+    public int probeTablebase(Tablebase tablebase) {
+        return tablebase.probe(board.getBitBoard());
+    }
+
+    public String toFen() {
+        return Fen.toFen(board.getBitBoard());
+    }
+
+    // writes PackedPosition.BYTES bytes at offset
+    public void pack(byte[] out, int offset) {
+        PackedPosition.encode(board.getBitBoard(), out, offset);
+    }
+
+    // null to stop listening
+    public void setMoveListener(MoveListener listener) {
+        this.listener = listener;
+    }
+
+    // writes the legal moves of the player to move and returns the new end offset, without copying the board
+    public int legalMoves(int[] moves, int offset) {
+        return board.getBitBoard().generateLegalMoves(moves, offset);
+    }
+
+    // a copy of the bitboards that engines can search without touching the match
+    public BitBoard snapshot() {
+        return new BitBoard(board.getBitBoard());
+    }
+
     public ChessPiece[][] getPieces() {
         ChessPiece[][] mat = new ChessPiece[board.getRows()][board.getColumns()];
         for (int i = 0; i < board.getRows(); i++) {
@@ -77,37 +153,57 @@ public class ChessMatch {
         Position target = targetPosition.toPosition();
         validateSourcePosition(source);
         validateTargetPosition(source, target);
-        Piece caputeredPiece = makeMove(source, target);
-        if (testCheck(currentPlayer)) {
-            undoMove(source, target, caputeredPiece);
+        int move = board.getBitBoard().toMove(BitBoard.square(source), BitBoard.square(target));
+        if (!board.getBitBoard().isLegal(move)) {
             throw new ChessException("You can't put yourself in check!");
         }
-        ChessPiece movedPiece = (ChessPiece) board.piece(target);
+        ChessPiece caputeredPiece = makeMove(move);
 
         // #Special Move - Promotion
         prometed = null;
-        if (movedPiece instanceof Pawn) {
-            if ((movedPiece.getColor() == Color.WHITE && target.getRow() == 0)
-                    || (movedPiece.getColor() == Color.BLACK && target.getRow() == 7)) {
-                prometed = (ChessPiece) board.piece(target);
-                prometed = replacePrometedPiece("Q");
-
-            }
+        if (Move.isPromotion(move)) {
+            prometed = (ChessPiece) board.piece(target);
         }
-        check = (testCheck(opponent(currentPlayer))) ? true : false;
-        checkmate = (testCheckMate(opponent(currentPlayer))) ? true : false;
-        if (testCheckMate(opponent(currentPlayer))) {
-            checkmate = true;
-        } else
+        check = testCheck(opponent(currentPlayer));
+        checkmate = testCheckMate(opponent(currentPlayer));
+        if (!checkmate) {
             nextTurn();
+        }
 
         // #Special move En Passant
-        if (movedPiece instanceof Pawn && target.getRow() == source.getRow() - 2
-                || target.getRow() == source.getRow() + 2)
-            enPassantVulnerable = movedPiece;
-        else
-            enPassantVulnerable = null;
-        return (ChessPiece) caputeredPiece;
+        enPassantVulnerable = enPassantPawn();
+        if (listener != null) {
+            listener.movePerformed(this, sourcePosition, targetPosition);
+        }
+        return caputeredPiece;
+    }
+
+    // plays a move written in SAN, e.g. "Nbd7" or "e8=N", through the same checks as perfomeChessMove
+    public ChessPiece perfomeSanMove(String san) {
+        int move = San.parse(san, board.getBitBoard());
+        ChessPiece capturedPiece = perfomeChessMove(chessPosition(Move.from(move)), chessPosition(Move.to(move)));
+        if (Move.isPromotion(move)) {
+            replacePrometedPiece(String.valueOf("PNBRQK".charAt(Move.promotionType(move))));
+        }
+        return capturedPiece;
+    }
+
+    // takes back the last move played, however many moves ago the match started
+    public void takeBack() {
+        if (board.getBitBoard().getPly() == 0) {
+            throw new ChessException("There is no move to take back");
+        }
+        if (!checkmate) {
+            previousTurn();
+        }
+        undoMove();
+        check = testCheck(currentPlayer);
+        checkmate = false;
+        prometed = null;
+        enPassantVulnerable = enPassantPawn();
+        if (listener != null) {
+            listener.moveTakenBack(this);
+        }
     }
 
     public ChessPiece replacePrometedPiece(String pieceType) {
@@ -118,14 +214,51 @@ public class ChessMatch {
             return prometed;
         }
         Position position = prometed.getChessPosition().toPosition();
-        Piece piece = board.removePiece(position);
-        piecesOnTheBoard.remove(piece);
+        board.removePiece(position);
         ChessPiece newPiece = newPiece(pieceType, prometed.getColor());
         board.placePiece(newPiece, position);
-        piecesOnTheBoard.add(newPiece);
+        board.getBitBoard().setPromotion(newPiece.getType());
+        board.getBitBoard().updateAttacks();
+
+        // check and checkmate were decided with a queen, an under-promotion can change both
+        boolean queenMated = checkmate;
+        Color defender = queenMated ? opponent(currentPlayer) : currentPlayer;
+        check = testCheck(defender);
+        checkmate = testCheckMate(defender);
+        if (queenMated && !checkmate) {
+            nextTurn();
+        } else if (!queenMated && checkmate) {
+            previousTurn();
+        }
+        if (listener != null) {
+            listener.piecePromoted(this, pieceType);
+        }
         return newPiece;
     }
 
+    private static ChessPosition chessPosition(int square) {
+        return ChessPosition.fromPosition(new Position(BitBoard.row(square), BitBoard.column(square)));
+    }
+
+    private ChessPiece enPassantPawn() {
+        BitBoard bitBoard = board.getBitBoard();
+        if (bitBoard.getEnPassantSquare() == BitBoard.EMPTY) {
+            return null;
+        }
+        return (ChessPiece) board.piece(bitBoard.enPassantCaptureSquare(bitBoard.getEnPassantSquare()));
+    }
+
+    private ChessPiece newPiece(int type, Color color) {
+        switch (type) {
+            case BitBoard.PAWN:
+                return new Pawn(board, color);
+            case BitBoard.KING:
+                return new King(board, color);
+            default:
+                return newPiece(String.valueOf("PNBRQK".charAt(type)), color);
+        }
+    }
+
     private ChessPiece newPiece(String pieceType, Color color) {
         switch (pieceType) {
             case "B":
@@ -140,86 +273,24 @@ public class ChessMatch {
         }
     }
 
-    private Piece makeMove(Position sourcePosition, Position targetPosition) {
-        ChessPiece piece = (ChessPiece) board.removePiece(sourcePosition);
-        piece.increaseMoveCount();
-        Piece capturedPiece = board.removePiece(targetPosition);
-        board.placePiece(piece, targetPosition);
+    private ChessPiece makeMove(int move) {
+        ChessPiece piece = (ChessPiece) board.piece(Move.from(move));
+        ChessPiece promotedPiece = null;
+        if (Move.isPromotion(move)) {
+            promotedPiece = newPiece("Q", piece.getColor());
+        }
+        ChessPiece capturedPiece = board.makeMove(move, promotedPiece);
         if (capturedPiece != null) {
-            piecesOnTheBoard.remove(capturedPiece);
             capturedPieces.add(capturedPiece);
         }
-        // special move castling kingside rook
-        if (piece instanceof King && targetPosition.getColumn() == sourcePosition.getColumn() + 2) {
-            Position sourcePositionRook = new Position(sourcePosition.getRow(), sourcePosition.getColumn() + 3);
-            Position targetPositionRook = new Position(sourcePosition.getRow(), sourcePosition.getColumn() + 1);
-            ChessPiece rook = (ChessPiece) board.removePiece(sourcePositionRook);
-            board.placePiece(rook, targetPositionRook);
-            rook.increaseMoveCount();
-        }
-        // special move castling queenside rook
-        if (piece instanceof King && targetPosition.getColumn() == sourcePosition.getColumn() - 2) {
-            Position sourcePositionRook = new Position(sourcePosition.getRow(), sourcePosition.getColumn() - 4);
-            Position targetPositionRook = new Position(sourcePosition.getRow(), sourcePosition.getColumn() - 1);
-            ChessPiece rook = (ChessPiece) board.removePiece(sourcePositionRook);
-            board.placePiece(rook, targetPositionRook);
-            rook.increaseMoveCount();
-        }
-        // #Special move En Passant
-        if (piece instanceof Pawn) {
-            if (sourcePosition.getRow() != targetPosition.getColumn() && capturedPiece == null) {
-                Position pawnPosition;
-                if (piece.getColor() == Color.WHITE)
-                    pawnPosition = new Position(targetPosition.getRow() + 1, targetPosition.getColumn());
-                else
-                    pawnPosition = new Position(targetPosition.getRow() - 1, targetPosition.getColumn());
-                capturedPiece = board.removePiece(pawnPosition);
-                capturedPieces.add(capturedPiece);
-                piecesOnTheBoard.remove(capturedPiece);
-            }
-        }
-
         return capturedPiece;
     }
 
-    private void undoMove(Position sourcePosition, Position targetPosition, Piece capturedPiece) {
-        ChessPiece piece = (ChessPiece) board.removePiece(targetPosition);
-        piece.decreaseMoveCount();
-        board.placePiece(piece, sourcePosition);
+    private void undoMove() {
+        ChessPiece capturedPiece = board.unmakeMove();
         if (capturedPiece != null) {
-            board.placePiece(capturedPiece, targetPosition);
             capturedPieces.remove(capturedPiece);
-            piecesOnTheBoard.add(capturedPiece);
-        }
-        // special move castling kingside rook
-        if (piece instanceof King && targetPosition.getColumn() == sourcePosition.getColumn() + 2) {
-            Position sourcePositionRook = new Position(sourcePosition.getRow(), sourcePosition.getColumn() + 3);
-            Position targetPositionRook = new Position(sourcePosition.getRow(), sourcePosition.getColumn() + 1);
-            ChessPiece rook = (ChessPiece) board.removePiece(targetPositionRook);
-            board.placePiece(rook, sourcePositionRook);
-            rook.decreaseMoveCount();
         }
-        // special move castling queenside rook
-        if (piece instanceof King && targetPosition.getColumn() == sourcePosition.getColumn() - 2) {
-            Position sourcePositionRook = new Position(sourcePosition.getRow(), sourcePosition.getColumn() - 4);
-            Position targetPositionRook = new Position(sourcePosition.getRow(), sourcePosition.getColumn() - 1);
-            ChessPiece rook = (ChessPiece) board.removePiece(targetPositionRook);
-            board.placePiece(rook, sourcePositionRook);
-            rook.increaseMoveCount();
-        }
-        // #Special move En Passant
-        if (piece instanceof Pawn) {
-            if (sourcePosition.getRow() != targetPosition.getColumn() && capturedPiece == enPassantVulnerable) {
-                ChessPiece pawn = (ChessPiece) board.removePiece(targetPosition);
-                Position pawnPosition;
-                if (piece.getColor() == Color.WHITE)
-                    pawnPosition = new Position(3, targetPosition.getColumn());
-                else
-                    pawnPosition = new Position(4, targetPosition.getColumn());
-                board.placePiece(pawn, pawnPosition);
-            }
-        }
-
     }
 
     private void validateSourcePosition(Position position) {
@@ -245,63 +316,29 @@ public class ChessMatch {
         currentPlayer = (currentPlayer == Color.WHITE) ? Color.BLACK : Color.WHITE;
     }
 
-    private Color opponent(Color color) {
-        return (color == Color.WHITE) ? Color.BLACK : Color.WHITE;
+    private void previousTurn() {
+        turn--;
+        currentPlayer = opponent(currentPlayer);
     }
 
-    private ChessPiece king(Color color) {
-        List<Piece> pieces = piecesOnTheBoard.stream().filter(x -> ((ChessPiece) x).getColor() == color)
-                .collect(Collectors.toList());
-        for (Piece piece : pieces) {
-            if (piece instanceof King) {
-                return (ChessPiece) piece;
-            }
-        }
-        throw new IllegalStateException("There is no " + color + " King on the board");
+    private Color opponent(Color color) {
+        return (color == Color.WHITE) ? Color.BLACK : Color.WHITE;
     }
 
-    private boolean testCheck(Color color) {
-        Position kingPosition = king(color).getChessPosition().toPosition();
-        List<Piece> opponentPieces = piecesOnTheBoard.stream()
-                .filter(x -> ((ChessPiece) x).getColor() == opponent(color)).collect(Collectors.toList());
-        for (Piece piece : opponentPieces) {
-            boolean[][] matrix = piece.possibleMoves();
-            if (matrix[kingPosition.getRow()][kingPosition.getColumn()]) {
-                return true;
-            }
-        }
-        return false;
+    boolean testCheck(Color color) {
+        return board.getBitBoard().getCheckers(BitBoard.colorIndex(color)) != 0;
     }
 
-    private boolean testCheckMate(Color color) {
+    boolean testCheckMate(Color color) {
         if (!testCheck(color)) {
             return false;
         }
-        List<Piece> oneColorPiecesList = piecesOnTheBoard.stream().filter(x -> ((ChessPiece) x).getColor() == color)
-                .collect(Collectors.toList());
-        for (Piece piece : oneColorPiecesList) {
-            boolean[][] moves = piece.possibleMoves();
-            for (int i = 0; i < board.getRows(); i++) {
-                for (int j = 0; j < board.getColumns(); j++) {
-                    if (moves[i][j]) {
-                        Position sourcePosition = ((ChessPiece) piece).getChessPosition().toPosition();
-                        Position targetPosition = new Position(i, j);
-                        Piece capturedPiece = makeMove(sourcePosition, targetPosition);
-                        boolean testCheck = testCheck(color);
-                        undoMove(sourcePosition, targetPosition, capturedPiece);
-                        if (!testCheck) {
-                            return false;
-                        }
-                    }
-                }
-            }
-        }
-        return true;
+        // the bitboards are always left with the checked side to move
+        return !board.getBitBoard().hasLegalMove();
     }
 
     private void placeNewPiece(char column, int row, ChessPiece piece) {
         board.placePiece(piece, new ChessPosition(column, row).toPosition());
-        piecesOnTheBoard.add(piece);
     }
 
     private void initialSetup() {
@@ -309,35 +346,37 @@ public class ChessMatch {
         placeNewPiece('b', 1, new Knight(board, Color.WHITE));
         placeNewPiece('c', 1, new Bishop(board, Color.WHITE));
         placeNewPiece('d', 1, new Queen(board, Color.WHITE));
-        placeNewPiece('e', 1, new King(board, Color.WHITE, this));
+        placeNewPiece('e', 1, new King(board, Color.WHITE));
         placeNewPiece('f', 1, new Bishop(board, Color.WHITE));
         placeNewPiece('g', 1, new Knight(board, Color.WHITE));
         placeNewPiece('h', 1, new Rook(board, Color.WHITE));
-        placeNewPiece('a', 2, new Pawn(board, Color.WHITE, this));
-        placeNewPiece('b', 2, new Pawn(board, Color.WHITE, this));
-        placeNewPiece('c', 2, new Pawn(board, Color.WHITE, this));
-        placeNewPiece('d', 2, new Pawn(board, Color.WHITE, this));
-        placeNewPiece('e', 2, new Pawn(board, Color.WHITE, this));
-        placeNewPiece('f', 2, new Pawn(board, Color.WHITE, this));
-        placeNewPiece('g', 2, new Pawn(board, Color.WHITE, this));
-        placeNewPiece('h', 2, new Pawn(board, Color.WHITE, this));
+        placeNewPiece('a', 2, new Pawn(board, Color.WHITE));
+        placeNewPiece('b', 2, new Pawn(board, Color.WHITE));
+        placeNewPiece('c', 2, new Pawn(board, Color.WHITE));
+        placeNewPiece('d', 2, new Pawn(board, Color.WHITE));
+        placeNewPiece('e', 2, new Pawn(board, Color.WHITE));
+        placeNewPiece('f', 2, new Pawn(board, Color.WHITE));
+        placeNewPiece('g', 2, new Pawn(board, Color.WHITE));
+        placeNewPiece('h', 2, new Pawn(board, Color.WHITE));
 
         placeNewPiece('a', 8, new Rook(board, Color.BLACK));
         placeNewPiece('b', 8, new Knight(board, Color.BLACK));
         placeNewPiece('c', 8, new Bishop(board, Color.BLACK));
         placeNewPiece('d', 8, new Queen(board, Color.BLACK));
-        placeNewPiece('e', 8, new King(board, Color.BLACK, this));
+        placeNewPiece('e', 8, new King(board, Color.BLACK));
         placeNewPiece('f', 8, new Bishop(board, Color.BLACK));
         placeNewPiece('g', 8, new Knight(board, Color.BLACK));
         placeNewPiece('h', 8, new Rook(board, Color.BLACK));
-        placeNewPiece('a', 7, new Pawn(board, Color.BLACK, this));
-        placeNewPiece('b', 7, new Pawn(board, Color.BLACK, this));
-        placeNewPiece('c', 7, new Pawn(board, Color.BLACK, this));
-        placeNewPiece('d', 7, new Pawn(board, Color.BLACK, this));
-        placeNewPiece('e', 7, new Pawn(board, Color.BLACK, this));
-        placeNewPiece('f', 7, new Pawn(board, Color.BLACK, this));
-        placeNewPiece('g', 7, new Pawn(board, Color.BLACK, this));
-        placeNewPiece('h', 7, new Pawn(board, Color.BLACK, this));
+        placeNewPiece('a', 7, new Pawn(board, Color.BLACK));
+        placeNewPiece('b', 7, new Pawn(board, Color.BLACK));
+        placeNewPiece('c', 7, new Pawn(board, Color.BLACK));
+        placeNewPiece('d', 7, new Pawn(board, Color.BLACK));
+        placeNewPiece('e', 7, new Pawn(board, Color.BLACK));
+        placeNewPiece('f', 7, new Pawn(board, Color.BLACK));
+        placeNewPiece('g', 7, new Pawn(board, Color.BLACK));
+        placeNewPiece('h', 7, new Pawn(board, Color.BLACK));
+        board.getBitBoard().setCastlingRights(BitBoard.ALL_CASTLING);
+        board.getBitBoard().updateAttacks();
     }
 
 }
@@ -21,6 +21,12 @@ public abstract class ChessPiece extends Piece {
         return color;
     }
 
+    public abstract int getType();
+
+    public int getCode() {
+        return BitBoard.code(BitBoard.colorIndex(color), getType());
+    }
+
     public void increaseMoveCount() {
         moveCount++;
     }
@@ -33,9 +39,25 @@ public abstract class ChessPiece extends Piece {
         return ChessPosition.fromPosition(position);
     }
 
+    protected BitBoard getBitBoard() {
+        return ((ChessBoard) getBoard()).getBitBoard();
+    }
+
     protected boolean isThereOpponentPiece(Position position) {
-        ChessPiece chessPiece = (ChessPiece) getBoard().piece(position);
-        return chessPiece != null && chessPiece.getColor() != color;
+        return isThereOpponentPiece(position.getRow(), position.getColumn());
+    }
+
+    protected boolean isThereOpponentPiece(int row, int column) {
+        long opponentPieces = getBitBoard().getColor(BitBoard.opponent(BitBoard.colorIndex(color)));
+        return (opponentPieces & BitBoard.bit(BitBoard.square(row, column))) != 0;
+    }
+
+    protected int getSquare() {
+        return BitBoard.square(position);
+    }
+
+    protected long withoutOwnPieces(long attacks) {
+        return attacks & ~getBitBoard().getColor(BitBoard.colorIndex(color));
     }
 
 }
@@ -0,0 +1,154 @@
+package chess.Engine;
+
+import java.util.SplittableRandom;
+
+import chess.BitBoard;
+import chess.ChessMatch;
+import chess.Move;
+import chess.Storage.OpeningBook;
+
+// An engine player with a fixed time per move. Book moves are played without searching. After each of its
+// moves it can ponder: search the position after the reply it expects while the opponent thinks. When the
+// opponent plays that reply the running search simply carries on with whatever time is left, otherwise it
+// is cancelled.
+public class Bot {
+    private final TranspositionTable transpositionTable;
+    private final Search search;
+    private final long moveMillis;
+    private final SplittableRandom random = new SplittableRandom();
+    private final int[] legalMoves = new int[256];
+
+    private OpeningBook openingBook;
+
+    private SearchResult lastResult;
+    private Thread ponderThread;
+    private volatile SearchResult ponderResult;
+    private long ponderKey;
+    private long ponderStart;
+
+    public Bot(int megabytes, long moveMillis) {
+        if (moveMillis <= 0) {
+            throw new IllegalArgumentException("The time per move must be positive");
+        }
+        transpositionTable = new TranspositionTable(megabytes);
+        search = new Search(transpositionTable);
+        this.moveMillis = moveMillis;
+    }
+
+    public void setOpeningBook(OpeningBook openingBook) {
+        this.openingBook = openingBook;
+    }
+
+    public void setTablebase(Tablebase tablebase) {
+        stopPondering();
+        search.setTablebase(tablebase);
+    }
+
+    // the move for the side to move in the match, Move.NONE when it has none
+    public int think(ChessMatch match) {
+        int bookMove = bookMove(match);
+        if (bookMove != Move.NONE) {
+            stopPondering();
+            lastResult = new SearchResult(bookMove, 0, 0, 0, 0, new int[] { bookMove });
+            return bookMove;
+        }
+        SearchResult result = null;
+        if (ponderThread != null) {
+            if (match.getZobristKey() == ponderKey) {
+                result = finishPondering();
+            } else {
+                stopPondering();
+            }
+        }
+        // a ponder search stopped before finishing depth 1 has nothing worth playing
+        if (result == null || result.getDepth() == 0) {
+            result = search.search(match, TimeManager.fixed(moveMillis));
+        }
+        lastResult = result;
+        return result.getBestMove();
+    }
+
+    // starts searching the expected reply to the move just played, call it right after playing think's move
+    public void ponder(ChessMatch match) {
+        stopPondering();
+        if (lastResult == null) {
+            return;
+        }
+        int[] principalVariation = lastResult.getPrincipalVariation();
+        BitBoard root = match.snapshot();
+        if (principalVariation.length < 2 || root.lastMove() != principalVariation[0]
+                || !root.isLegal(principalVariation[1])) {
+            return;
+        }
+        root.makeMove(principalVariation[1]);
+        ponderKey = root.getKey();
+        ponderStart = System.nanoTime();
+        ponderResult = null;
+        transpositionTable.newSearch();
+        // cleared here rather than on the ponder thread, so a stop sent right after this call can't be lost
+        search.reset();
+        ponderThread = new Thread(() -> ponderResult = search.iterate(root, 1, Search.MAX_PLY - 1,
+                Long.MAX_VALUE, null), "ponder");
+        ponderThread.setDaemon(true);
+        ponderThread.start();
+    }
+
+    public boolean isPondering() {
+        return ponderThread != null;
+    }
+
+    // cancels pondering on a miss, or when the game is over
+    public void stopPondering() {
+        if (ponderThread == null) {
+            return;
+        }
+        search.stop();
+        join();
+    }
+
+    public SearchResult getLastResult() {
+        return lastResult;
+    }
+
+    // book moves are only trusted once found among the legal moves, keys can collide
+    private int bookMove(ChessMatch match) {
+        if (openingBook == null) {
+            return Move.NONE;
+        }
+        int move = openingBook.pickMove(match.getZobristKey(), random.nextDouble());
+        if (move == Move.NONE) {
+            return Move.NONE;
+        }
+        int count = match.snapshot().generateLegalMoves(legalMoves, 0);
+        for (int i = 0; i < count; i++) {
+            if (legalMoves[i] == move) {
+                return move;
+            }
+        }
+        return Move.NONE;
+    }
+
+    // the time already spent pondering counts towards the move, so a slow opponent gets an instant answer
+    private SearchResult finishPondering() {
+        long remaining = moveMillis - (System.nanoTime() - ponderStart) / 1_000_000;
+        if (remaining > 0) {
+            try {
+                ponderThread.join(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        search.stop();
+        join();
+        return ponderResult;
+    }
+
+    private void join() {
+        try {
+            ponderThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ponderThread = null;
+    }
+}
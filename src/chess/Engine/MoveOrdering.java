@@ -0,0 +1,131 @@
+package chess.Engine;
+
+import chess.BitBoard;
+import chess.Move;
+
+// Scores the moves of a node and hands them out best first: hash move, captures by MVV-LVA, killers,
+// the counter move and then quiet moves by history. Selection is lazy, a node that cuts off after a
+// couple of moves never pays for sorting the rest.
+class MoveOrdering {
+    private static final int HASH_MOVE = 1 << 30;
+    private static final int CAPTURE = 1 << 26;
+    private static final int KILLER = 1 << 25;
+    private static final int COUNTER_MOVE = KILLER - 2;
+    private static final int HISTORY_LIMIT = 1 << 20;
+
+    private final int[][] scores = new int[Search.MAX_PLY][256];
+    private final int[][] killers = new int[Search.MAX_PLY][2];
+    private final int[][][] history = new int[2][64][64];
+    // indexed by the piece code and target of the move being answered
+    private final int[][] counterMoves = new int[12][64];
+
+    // killers belong to the previous tree, history is only aged so it keeps some of what it learned
+    void newSearch() {
+        for (int[] pair : killers) {
+            pair[0] = Move.NONE;
+            pair[1] = Move.NONE;
+        }
+        for (int[][] side : history) {
+            for (int[] from : side) {
+                for (int to = 0; to < 64; to++) {
+                    from[to] /= 2;
+                }
+            }
+        }
+    }
+
+    void score(BitBoard bitBoard, int[] moves, int count, int ply, int hashMove) {
+        int[] score = scores[ply];
+        int side = bitBoard.getSideToMove();
+        int counterMove = counterMove(bitBoard);
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            int from = Move.from(move);
+            int to = Move.to(move);
+            if (move == hashMove) {
+                score[i] = HASH_MOVE;
+            } else if (!isQuiet(bitBoard, move)) {
+                int victim = Move.flag(move) == Move.EN_PASSANT ? BitBoard.PAWN
+                        : bitBoard.pieceAt(to) == BitBoard.EMPTY ? -1 : BitBoard.typeOf(bitBoard.pieceAt(to));
+                int attacker = BitBoard.typeOf(bitBoard.pieceAt(from));
+                int promotion = Move.isPromotion(move) ? Move.promotionType(move) : 0;
+                if (Move.isPromotion(move) && promotion != BitBoard.QUEEN) {
+                    // under-promotions are almost never worth trying early
+                    score[i] = -HISTORY_LIMIT - 1 + promotion;
+                } else {
+                    score[i] = CAPTURE + (victim + 1) * 64 + promotion * 8 - attacker;
+                }
+            } else if (move == killers[ply][0]) {
+                score[i] = KILLER;
+            } else if (move == killers[ply][1]) {
+                score[i] = KILLER - 1;
+            } else if (move == counterMove) {
+                score[i] = COUNTER_MOVE;
+            } else {
+                score[i] = history[side][from][to];
+            }
+        }
+    }
+
+    // swaps the best of the moves not tried yet into place and returns it
+    int next(int[] moves, int index, int count, int ply) {
+        int[] score = scores[ply];
+        int best = index;
+        for (int i = index + 1; i < count; i++) {
+            if (score[i] > score[best]) {
+                best = i;
+            }
+        }
+        int move = moves[best];
+        moves[best] = moves[index];
+        moves[index] = move;
+        int bestScore = score[best];
+        score[best] = score[index];
+        score[index] = bestScore;
+        return move;
+    }
+
+    // a quiet move caused a beta cutoff, the quiet moves tried before it (moves[0..index)) get a malus
+    void cutoff(BitBoard bitBoard, int[] moves, int index, int ply, int depth) {
+        int move = moves[index];
+        if (!isQuiet(bitBoard, move)) {
+            return;
+        }
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        int side = bitBoard.getSideToMove();
+        int bonus = Math.min(depth * depth, 400);
+        updateHistory(side, move, bonus);
+        for (int i = 0; i < index; i++) {
+            if (isQuiet(bitBoard, moves[i])) {
+                updateHistory(side, moves[i], -bonus);
+            }
+        }
+        int previous = bitBoard.lastMove();
+        if (previous != Move.NONE) {
+            counterMoves[bitBoard.pieceAt(Move.to(previous))][Move.to(previous)] = move;
+        }
+    }
+
+    private void updateHistory(int side, int move, int bonus) {
+        int[] from = history[side][Move.from(move)];
+        int to = Move.to(move);
+        // gravity keeps every entry inside the limit without periodic rescaling
+        from[to] += bonus - from[to] * Math.abs(bonus) / HISTORY_LIMIT;
+    }
+
+    private int counterMove(BitBoard bitBoard) {
+        int previous = bitBoard.lastMove();
+        if (previous == Move.NONE) {
+            return Move.NONE;
+        }
+        return counterMoves[bitBoard.pieceAt(Move.to(previous))][Move.to(previous)];
+    }
+
+    static boolean isQuiet(BitBoard bitBoard, int move) {
+        return !Move.isPromotion(move) && Move.flag(move) != Move.EN_PASSANT
+                && bitBoard.pieceAt(Move.to(move)) == BitBoard.EMPTY;
+    }
+}
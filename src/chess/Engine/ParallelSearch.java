@@ -0,0 +1,162 @@
+package chess.Engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import chess.BitBoard;
+import chess.ChessMatch;
+import chess.Fen;
+
+// Lazy SMP: every worker runs its own iterative deepening search on its own copy of the root, and the
+// workers only share the lock-free transposition table. The first worker's result is the answer.
+public class ParallelSearch {
+    private final TranspositionTable transpositionTable;
+    private final Search[] workers;
+    private final ExecutorService executor;
+    private long nodes;
+
+    public ParallelSearch(TranspositionTable transpositionTable, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("A parallel search needs at least one thread");
+        }
+        this.transpositionTable = transpositionTable;
+        workers = new Search[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Search(transpositionTable);
+        }
+        executor = Executors.newFixedThreadPool(Math.max(1, threads - 1), runnable -> {
+            Thread thread = new Thread(runnable, "search-helper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public SearchResult search(ChessMatch match, int maxDepth, long maxNodes) {
+        return search(match.snapshot(), maxDepth, maxNodes);
+    }
+
+    public SearchResult search(BitBoard root, int maxDepth, long maxNodes) {
+        return run(root, maxDepth, maxNodes, null);
+    }
+
+    public SearchResult search(ChessMatch match, TimeManager timeManager) {
+        return search(match.snapshot(), timeManager);
+    }
+
+    // every worker polls the same deadlines, helpers are stopped as soon as the first worker returns
+    public SearchResult search(BitBoard root, TimeManager timeManager) {
+        return run(root, Search.MAX_PLY - 1, Long.MAX_VALUE, timeManager);
+    }
+
+    private SearchResult run(BitBoard root, int maxDepth, long maxNodes, TimeManager timeManager) {
+        transpositionTable.newSearch();
+        for (Search worker : workers) {
+            worker.reset();
+        }
+        List<Future<SearchResult>> helpers = new ArrayList<>();
+        for (int i = 1; i < workers.length; i++) {
+            Search helper = workers[i];
+            int startDepth = 1 + (i & 1);
+            helpers.add(executor.submit(() -> helper.iterate(root, startDepth, maxDepth, Long.MAX_VALUE,
+                    timeManager)));
+        }
+        SearchResult result = workers[0].iterate(root, 1, maxDepth, maxNodes, timeManager);
+        nodes = workers[0].getNodes();
+        for (int i = 1; i < workers.length; i++) {
+            workers[i].stop();
+        }
+        for (int i = 0; i < helpers.size(); i++) {
+            try {
+                helpers.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Search helper failed", e.getCause());
+            }
+            nodes += workers[i + 1].getNodes();
+        }
+        return result;
+    }
+
+    public void setTablebase(Tablebase tablebase) {
+        for (Search worker : workers) {
+            worker.setTablebase(tablebase);
+        }
+    }
+
+    public void stop() {
+        for (Search worker : workers) {
+            worker.stop();
+        }
+    }
+
+    public SearchResult getLastResult() {
+        return workers[0].getLastResult();
+    }
+
+    // nodes searched by all workers in the last search
+    public long getNodes() {
+        return nodes;
+    }
+
+    // pawn hash hit rate over all workers since their counters were last reset
+    public double getPawnHashHitRate() {
+        long probes = 0;
+        long hits = 0;
+        for (Search worker : workers) {
+            probes += worker.getPawnHashTable().getProbes();
+            hits += worker.getPawnHashTable().getHits();
+        }
+        return probes == 0 ? 0 : (double) hits / probes;
+    }
+
+    public int getThreads() {
+        return workers.length;
+    }
+
+    public void shutdown() {
+        stop();
+        executor.shutdownNow();
+    }
+
+    // usage: ParallelSearch [depth] [max threads] [table MB], reports nodes/second and time-to-depth speedup
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 7;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int megabytes = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        String[] positions = { Fen.INITIAL, "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10" };
+        // warm up the JIT first, or the single thread run pays for compilation and inflates the speedups
+        BitBoard warmup = new BitBoard();
+        Fen.load(positions[0], warmup);
+        new Search(new TranspositionTable(TranspositionTable.MIN_MEGABYTES)).search(warmup, depth, Long.MAX_VALUE);
+
+        double baseline = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            TranspositionTable table = new TranspositionTable(megabytes);
+            ParallelSearch search = new ParallelSearch(table, threads);
+            long totalNodes = 0;
+            long totalNanos = 0;
+            for (String fen : positions) {
+                BitBoard root = new BitBoard();
+                Fen.load(fen, root);
+                table.clear();
+                long start = System.nanoTime();
+                search.search(root, depth, Long.MAX_VALUE);
+                totalNanos += System.nanoTime() - start;
+                totalNodes += search.getNodes();
+            }
+            search.shutdown();
+            double seconds = totalNanos / 1e9;
+            if (threads == 1) {
+                baseline = seconds;
+            }
+            System.out.printf("threads %3d  depth %d  time %8.2f s  nodes/second %,12d  speedup %5.2fx%n", threads,
+                    depth, seconds, Perft.nodesPerSecond(totalNodes, totalNanos), baseline / seconds);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package chess.Engine;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+import chess.BitBoard;
+import chess.ChessMatch;
+import chess.Fen;
+import chess.Move;
+
+public class Perft {
+    private static final int MAX_DEPTH = 32;
+
+    // fen, then leaf counts for depth 1, 2, 3...
+    private static final Object[][] REFERENCE_POSITIONS = {
+            { Fen.INITIAL, new long[] { 20, 400, 8902, 197281, 4865609, 119060324 } },
+            { "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                    new long[] { 48, 2039, 97862, 4085603, 193690690 } },
+            { "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", new long[] { 14, 191, 2812, 43238, 674624, 11030083 } },
+            { "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                    new long[] { 6, 264, 9467, 422333, 15833292 } },
+            { "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+                    new long[] { 44, 1486, 62379, 2103487, 89941194 } },
+            { "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+                    new long[] { 46, 2079, 89890, 3894594, 164075551 } } };
+
+    private final BitBoard bitBoard;
+    private final int[][] moves = new int[MAX_DEPTH][256];
+
+    public Perft(BitBoard bitBoard) {
+        this.bitBoard = bitBoard;
+    }
+
+    public long perft(int depth) {
+        return perft(depth, 0);
+    }
+
+    // leaf counts per root move, followed by the total and the speed
+    public long divide(int depth, PrintStream out) {
+        long start = System.nanoTime();
+        int[] rootMoves = moves[0];
+        int count = bitBoard.generateLegalMoves(rootMoves, 0);
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            bitBoard.makeMove(rootMoves[i]);
+            long nodes = depth > 1 ? perft(depth - 1, 1) : 1;
+            bitBoard.unmakeMove();
+            out.println(Move.toString(rootMoves[i]) + ": " + nodes);
+            total += nodes;
+        }
+        long elapsed = System.nanoTime() - start;
+        out.println();
+        out.println("Moves: " + count);
+        out.println("Nodes: " + total);
+        out.println("Time: " + elapsed / 1_000_000 + " ms");
+        out.println("Nodes/second: " + nodesPerSecond(total, elapsed));
+        return total;
+    }
+
+    private long perft(int depth, int ply) {
+        int[] buffer = moves[ply];
+        int count = bitBoard.generateMoves(buffer, 0);
+        int mover = bitBoard.getSideToMove();
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            bitBoard.makeMove(buffer[i]);
+            if (bitBoard.getCheckers(mover) == 0) {
+                nodes += depth > 1 ? perft(depth - 1, ply + 1) : 1;
+            }
+            bitBoard.unmakeMove();
+        }
+        return nodes;
+    }
+
+    public static long nodesPerSecond(long nodes, long nanos) {
+        return nanos == 0 ? 0 : nodes * 1_000_000_000L / nanos;
+    }
+
+    // runs every reference position up to a node budget and reports mismatches
+    public static boolean verify(long maxNodes, PrintStream out) {
+        boolean passed = true;
+        long totalNodes = 0;
+        long totalNanos = 0;
+        for (Object[] reference : REFERENCE_POSITIONS) {
+            String fen = (String) reference[0];
+            long[] expected = (long[]) reference[1];
+            BitBoard bitBoard = new BitBoard();
+            Fen.load(fen, bitBoard);
+            Perft perft = new Perft(bitBoard);
+            for (int depth = 1; depth <= expected.length && expected[depth - 1] <= maxNodes; depth++) {
+                long start = System.nanoTime();
+                long nodes = perft.perft(depth);
+                long elapsed = System.nanoTime() - start;
+                totalNodes += nodes;
+                totalNanos += elapsed;
+                boolean ok = nodes == expected[depth - 1];
+                passed &= ok;
+                out.println((ok ? "ok    " : "FAIL  ") + fen + " depth " + depth + ": " + nodes
+                        + (ok ? "" : " (expected " + expected[depth - 1] + ")"));
+            }
+        }
+        out.println("Nodes/second: " + nodesPerSecond(totalNodes, totalNanos));
+        return passed;
+    }
+
+    // usage: Perft <depth> [fen] | Perft --verify [max nodes]
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--verify")) {
+            long maxNodes = args.length > 1 ? Long.parseLong(args[1]) : 5_000_000L;
+            System.exit(verify(maxNodes, System.out) ? 0 : 1);
+        }
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        BitBoard bitBoard;
+        if (args.length > 1) {
+            bitBoard = new BitBoard();
+            Fen.load(String.join(" ", Arrays.copyOfRange(args, 1, args.length)), bitBoard);
+        } else {
+            bitBoard = new ChessMatch().snapshot();
+        }
+        new Perft(bitBoard).divide(depth, System.out);
+    }
+}
@@ -0,0 +1,344 @@
+package chess.Engine;
+
+import chess.BitBoard;
+import chess.ChessMatch;
+import chess.Evaluation;
+import chess.Move;
+import chess.PawnHashTable;
+
+// Negamax alpha-beta with iterative deepening, principal variation search and aspiration windows.
+// Every search runs on its own copy of the root, so the match being searched is never touched.
+public class Search {
+    public static final int MATE = 32000;
+    public static final int INFINITY = 32001;
+    public static final int MAX_PLY = 128;
+
+    private static final int ASPIRATION_WINDOW = 50;
+    // the clock is read once per this many nodes, System.nanoTime is too slow to call at every node
+    private static final int CLOCK_CHECK_INTERVAL = 2048;
+    private static final int PAWN_HASH_ENTRIES = 1 << 14;
+    // a capture that can't raise alpha even with this much positional gain on top is not searched
+    private static final int DELTA_MARGIN = 200;
+
+    private final TranspositionTable transpositionTable;
+    private final int[][] moves = new int[MAX_PLY][256];
+    private final int[][] principalVariation = new int[MAX_PLY][MAX_PLY];
+    private final int[] principalVariationLength = new int[MAX_PLY];
+    private final MoveOrdering ordering = new MoveOrdering();
+    private final PawnHashTable pawnTable = new PawnHashTable(PAWN_HASH_ENTRIES);
+    private final int[] exchangeGains = new int[StaticExchange.MAX_EXCHANGES];
+    private Tablebase tablebase;
+
+    private BitBoard bitBoard;
+    private long nodes;
+    private long maxNodes;
+    private TimeManager timeManager;
+    private volatile boolean stopped;
+    private volatile SearchResult lastResult;
+
+    public Search(TranspositionTable transpositionTable) {
+        this.transpositionTable = transpositionTable;
+    }
+
+    public SearchResult search(ChessMatch match, int maxDepth, long maxNodes) {
+        return search(match.snapshot(), maxDepth, maxNodes);
+    }
+
+    public SearchResult search(BitBoard root, int maxDepth, long maxNodes) {
+        transpositionTable.newSearch();
+        stopped = false;
+        return iterate(root, 1, maxDepth, maxNodes, null);
+    }
+
+    public SearchResult search(ChessMatch match, TimeManager timeManager) {
+        return search(match.snapshot(), timeManager);
+    }
+
+    // searches as deep as the clock allows
+    public SearchResult search(BitBoard root, TimeManager timeManager) {
+        transpositionTable.newSearch();
+        stopped = false;
+        return iterate(root, 1, MAX_PLY - 1, Long.MAX_VALUE, timeManager);
+    }
+
+    // endgames the tablebase covers are scored exactly instead of being searched
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    // stops the running search from another thread, the last completed iteration is returned
+    public void stop() {
+        stopped = true;
+    }
+
+    // clears a previous stop, done before the search is handed to another thread so a stop can't be lost
+    void reset() {
+        stopped = false;
+    }
+
+    // the result of the last completed iteration of the running or last search, null before depth 1 completes
+    public SearchResult getLastResult() {
+        return lastResult;
+    }
+
+    // helper threads of a parallel search start at different depths to spread over the tree,
+    // timeManager is null when only the depth and node limits apply
+    SearchResult iterate(BitBoard root, int startDepth, int maxDepth, long maxNodes, TimeManager timeManager) {
+        bitBoard = new BitBoard(root);
+        ordering.newSearch();
+        this.maxNodes = maxNodes;
+        this.timeManager = timeManager;
+        lastResult = null;
+        nodes = 0;
+        long start = System.nanoTime();
+
+        SearchResult result = null;
+        int score = 0;
+        for (int depth = startDepth; depth <= Math.min(maxDepth, MAX_PLY - 1); depth++) {
+            int alpha = -INFINITY;
+            int beta = INFINITY;
+            int window = ASPIRATION_WINDOW;
+            if (depth >= 4) {
+                alpha = Math.max(score - window, -INFINITY);
+                beta = Math.min(score + window, INFINITY);
+            }
+            while (true) {
+                int iterationScore = negamax(depth, 0, alpha, beta);
+                if (stopped) {
+                    break;
+                }
+                // widen whichever side failed and search the same depth again
+                if (iterationScore <= alpha) {
+                    window *= 2;
+                    alpha = Math.max(iterationScore - window, -INFINITY);
+                } else if (iterationScore >= beta) {
+                    window *= 2;
+                    beta = Math.min(iterationScore + window, INFINITY);
+                } else {
+                    score = iterationScore;
+                    break;
+                }
+            }
+            if (stopped || principalVariationLength[0] == 0) {
+                break;
+            }
+            int[] pv = new int[principalVariationLength[0]];
+            System.arraycopy(principalVariation[0], 0, pv, 0, pv.length);
+            result = new SearchResult(pv[0], score, depth, nodes, System.nanoTime() - start, pv);
+            lastResult = result;
+            // another iteration would most likely not finish before the hard deadline
+            if (Math.abs(score) >= MATE - MAX_PLY || (timeManager != null && timeManager.isSoftExpired())) {
+                break;
+            }
+        }
+        if (result == null) {
+            // not even depth 1 finished within the budget, fall back to any legal move
+            int count = bitBoard.generateLegalMoves(moves[0], 0);
+            int move = count > 0 ? moves[0][0] : Move.NONE;
+            result = new SearchResult(move, 0, 0, nodes, System.nanoTime() - start,
+                    count > 0 ? new int[] { move } : new int[0]);
+        }
+        return result;
+    }
+
+    private int negamax(int depth, int ply, int alpha, int beta) {
+        principalVariationLength[ply] = 0;
+        if (ply > 0 && (bitBoard.getHalfmoveClock() >= 100 || bitBoard.isRepetition())) {
+            return 0;
+        }
+        if (tablebase != null && ply > 0 && Long.bitCount(bitBoard.getOccupied()) <= Tablebase.MAX_PIECES) {
+            int value = tablebase.probe(bitBoard);
+            if (value != Tablebase.NOT_FOUND) {
+                int plies = Tablebase.pliesToMate(value);
+                return value > 0 ? MATE - ply - plies : value < 0 ? -MATE + ply + plies : 0;
+            }
+        }
+        if (depth <= 0 || ply >= MAX_PLY - 1) {
+            return quiescence(ply, alpha, beta);
+        }
+        if (outOfBudget()) {
+            return 0;
+        }
+
+        boolean pvNode = beta - alpha > 1;
+        long key = bitBoard.getKey();
+        long entry = transpositionTable.probe(key);
+        int hashMove = Move.NONE;
+        if (entry != 0) {
+            hashMove = TranspositionTable.move(entry);
+            if (!pvNode && ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.BOUND_EXACT
+                        || (bound == TranspositionTable.BOUND_LOWER && score >= beta)
+                        || (bound == TranspositionTable.BOUND_UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        int[] buffer = moves[ply];
+        int count = bitBoard.generateMoves(buffer, 0);
+        ordering.score(bitBoard, buffer, count, ply, hashMove);
+
+        int mover = bitBoard.getSideToMove();
+        int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = Move.NONE;
+        int legalMoves = 0;
+        for (int i = 0; i < count; i++) {
+            int move = ordering.next(buffer, i, count, ply);
+            bitBoard.makeMove(move);
+            if (bitBoard.getCheckers(mover) != 0) {
+                bitBoard.unmakeMove();
+                continue;
+            }
+            legalMoves++;
+            int score;
+            if (legalMoves == 1) {
+                score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+            } else {
+                // null window first, full re-search only when the move might beat the best one
+                score = -negamax(depth - 1, ply + 1, -alpha - 1, -alpha);
+                if (score > alpha && score < beta) {
+                    score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+                }
+            }
+            bitBoard.unmakeMove();
+            if (stopped) {
+                return 0;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    updatePrincipalVariation(ply, move);
+                    if (alpha >= beta) {
+                        ordering.cutoff(bitBoard, buffer, i, ply, depth);
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (legalMoves == 0) {
+            return bitBoard.getCheckers(mover) != 0 ? -MATE + ply : 0;
+        }
+        int bound = bestScore >= beta ? TranspositionTable.BOUND_LOWER
+                : bestScore > originalAlpha ? TranspositionTable.BOUND_EXACT : TranspositionTable.BOUND_UPPER;
+        transpositionTable.store(key, bestMove, toTable(bestScore, ply), depth, bound);
+        return bestScore;
+    }
+
+    // resolves captures and promotions until the position is quiet, evasions are all searched when in check
+    private int quiescence(int ply, int alpha, int beta) {
+        if (ply >= MAX_PLY - 1) {
+            return Evaluation.evaluate(bitBoard, pawnTable);
+        }
+        if (outOfBudget()) {
+            return 0;
+        }
+        int mover = bitBoard.getSideToMove();
+        boolean inCheck = bitBoard.getCheckers(mover) != 0;
+        int standPat = Evaluation.evaluate(bitBoard, pawnTable);
+        if (!inCheck) {
+            if (standPat >= beta) {
+                return standPat;
+            }
+            alpha = Math.max(alpha, standPat);
+        }
+
+        int[] buffer = moves[ply];
+        int count = bitBoard.generateMoves(buffer, 0);
+        if (!inCheck) {
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                int move = buffer[i];
+                if (MoveOrdering.isQuiet(bitBoard, move)) {
+                    continue;
+                }
+                // delta pruning, then losing captures are dropped without being played
+                if (!Move.isPromotion(move) && standPat + capturedValue(move) + DELTA_MARGIN <= alpha) {
+                    continue;
+                }
+                if (StaticExchange.evaluate(bitBoard, move, exchangeGains) < 0) {
+                    continue;
+                }
+                buffer[kept++] = move;
+            }
+            count = kept;
+        }
+        ordering.score(bitBoard, buffer, count, ply, Move.NONE);
+
+        int bestScore = inCheck ? -INFINITY : standPat;
+        int legalMoves = 0;
+        for (int i = 0; i < count; i++) {
+            int move = ordering.next(buffer, i, count, ply);
+            bitBoard.makeMove(move);
+            if (bitBoard.getCheckers(mover) != 0) {
+                bitBoard.unmakeMove();
+                continue;
+            }
+            legalMoves++;
+            int score = -quiescence(ply + 1, -beta, -alpha);
+            bitBoard.unmakeMove();
+            if (stopped) {
+                return 0;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        if (inCheck && legalMoves == 0) {
+            return -MATE + ply;
+        }
+        return bestScore;
+    }
+
+    private boolean outOfBudget() {
+        if (++nodes >= maxNodes || (nodes % CLOCK_CHECK_INTERVAL == 0 && timeManager != null
+                && timeManager.isHardExpired())) {
+            stopped = true;
+        }
+        return stopped;
+    }
+
+    private int capturedValue(int move) {
+        if (Move.flag(move) == Move.EN_PASSANT) {
+            return Evaluation.pieceValue(BitBoard.PAWN);
+        }
+        return Evaluation.pieceValue(BitBoard.typeOf(bitBoard.pieceAt(Move.to(move))));
+    }
+
+    private void updatePrincipalVariation(int ply, int move) {
+        principalVariation[ply][0] = move;
+        int length = principalVariationLength[ply + 1];
+        System.arraycopy(principalVariation[ply + 1], 0, principalVariation[ply], 1, length);
+        principalVariationLength[ply] = length + 1;
+    }
+
+    // mate scores are stored relative to the node, not the root
+    private static int toTable(int score, int ply) {
+        return score >= MATE - MAX_PLY ? score + ply : score <= -MATE + MAX_PLY ? score - ply : score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        return score >= MATE - MAX_PLY ? score - ply : score <= -MATE + MAX_PLY ? score + ply : score;
+    }
+
+    // owned by this search, so the hit rate is that of this thread
+    public PawnHashTable getPawnHashTable() {
+        return pawnTable;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+}
@@ -0,0 +1,74 @@
+package chess.Engine;
+
+import chess.BitBoard;
+import chess.ChessPosition;
+import chess.Move;
+
+public class SearchResult {
+    private final int bestMove;
+    private final int score;
+    private final int depth;
+    private final long nodes;
+    private final long nanos;
+    private final int[] principalVariation;
+
+    public SearchResult(int bestMove, int score, int depth, long nodes, long nanos, int[] principalVariation) {
+        this.bestMove = bestMove;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.nanos = nanos;
+        this.principalVariation = principalVariation;
+    }
+
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    // centipawns from the side to move's point of view
+    public int getScore() {
+        return score;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    public int[] getPrincipalVariation() {
+        return principalVariation.clone();
+    }
+
+    public ChessPosition getSourcePosition() {
+        return toChessPosition(Move.from(bestMove));
+    }
+
+    public ChessPosition getTargetPosition() {
+        return toChessPosition(Move.to(bestMove));
+    }
+
+    public boolean isMate() {
+        return Math.abs(score) >= Search.MATE - Search.MAX_PLY;
+    }
+
+    private static ChessPosition toChessPosition(int square) {
+        return new ChessPosition((char) ('a' + BitBoard.column(square)), 8 - BitBoard.row(square));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder pv = new StringBuilder();
+        for (int move : principalVariation) {
+            pv.append(' ').append(Move.toString(move));
+        }
+        return "depth " + depth + " score " + score + " nodes " + nodes + " time " + nanos / 1_000_000 + " ms pv"
+                + pv;
+    }
+}
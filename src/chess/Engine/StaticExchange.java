@@ -0,0 +1,75 @@
+package chess.Engine;
+
+import chess.BitBoard;
+import chess.Evaluation;
+import chess.Move;
+
+// Static exchange evaluation: the material balance of the capture sequence on the target square when both
+// sides always recapture with their least valuable attacker and may stop whenever they are ahead.
+// Pins are ignored, sliders behind the capturing pieces join in as the square opens up.
+final class StaticExchange {
+    private static final int KING_VALUE = 20000;
+    // every piece on the board can take part in an exchange, plus the first capture
+    static final int MAX_EXCHANGES = 33;
+
+    private StaticExchange() {
+    }
+
+    // gain is scratch space of at least MAX_EXCHANGES entries, owned by the caller so nothing is allocated
+    static int evaluate(BitBoard bitBoard, int move, int[] gain) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        long occupied = bitBoard.getOccupied() ^ BitBoard.bit(from);
+        if (Move.flag(move) == Move.EN_PASSANT) {
+            occupied ^= BitBoard.bit(bitBoard.enPassantCaptureSquare(to));
+            gain[0] = value(BitBoard.PAWN);
+        } else {
+            int victim = bitBoard.pieceAt(to);
+            gain[0] = victim == BitBoard.EMPTY ? 0 : value(BitBoard.typeOf(victim));
+        }
+        int onSquare = BitBoard.typeOf(bitBoard.pieceAt(from));
+        if (Move.isPromotion(move)) {
+            gain[0] += value(Move.promotionType(move)) - value(BitBoard.PAWN);
+            onSquare = Move.promotionType(move);
+        }
+
+        long attackers = bitBoard.attackersTo(to, occupied) & occupied;
+        int side = BitBoard.opponent(BitBoard.colorOf(bitBoard.pieceAt(from)));
+        int depth = 0;
+        while (true) {
+            long own = attackers & bitBoard.getColor(side);
+            if (own == 0) {
+                break;
+            }
+            int type = BitBoard.PAWN;
+            long attacker = 0;
+            for (; type <= BitBoard.KING; type++) {
+                attacker = own & bitBoard.getPieces(side, type);
+                if (attacker != 0) {
+                    break;
+                }
+            }
+            depth++;
+            // speculative score if the piece standing on the square gets taken
+            gain[depth] = value(onSquare) - gain[depth - 1];
+            // neither side can improve by going on, the speculative entry is dropped
+            if (Math.max(-gain[depth - 1], gain[depth]) < 0) {
+                depth--;
+                break;
+            }
+            occupied ^= Long.lowestOneBit(attacker);
+            attackers = bitBoard.attackersTo(to, occupied) & occupied;
+            onSquare = type;
+            side = BitBoard.opponent(side);
+        }
+        while (depth > 0) {
+            gain[depth - 1] = -Math.max(-gain[depth - 1], gain[depth]);
+            depth--;
+        }
+        return gain[0];
+    }
+
+    private static int value(int type) {
+        return type == BitBoard.KING ? KING_VALUE : Evaluation.pieceValue(type);
+    }
+}
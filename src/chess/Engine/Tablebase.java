@@ -0,0 +1,250 @@
+package chess.Engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import chess.BitBoard;
+
+// Endgame tablebases for KQK, KRK, KBNK and KPK, as written by TablebaseGenerator. A table has one byte per
+// position: 0 for a draw, n > 0 when the side to move mates in n plies, -(n + 1) when it gets mated in n plies.
+// Positions are indexed with the stronger side as White, the king of the stronger side moved into the a1-d1-d4
+// triangle by the board symmetries (only mirrored left-right with pawns) and the other pieces' squares
+// appended, so a probe is a few table lookups. The files are memory-mapped and shared by every thread.
+public class Tablebase {
+    public static final int NOT_FOUND = Integer.MIN_VALUE;
+    public static final int MAX_PIECES = 4;
+
+    // generation order, KPK promotes into KQK and KRK
+    static final String[] NAMES = { "KQK", "KRK", "KBNK", "KPK" };
+    static final int KQK = 0;
+    static final int KRK = 1;
+    static final int[][] PIECES = { { BitBoard.QUEEN }, { BitBoard.ROOK }, { BitBoard.KNIGHT, BitBoard.BISHOP },
+            { BitBoard.PAWN } };
+    static final byte ILLEGAL = Byte.MIN_VALUE;
+    static final long MAGIC = 0x4348455353544231L; // "CHESSTB1"
+    static final int HEADER_BYTES = 16;
+    static final String EXTENSION = ".tb";
+
+    private static final int[] TRIANGLE = new int[64];
+    private static final int[] TRIANGLE_SQUARES = new int[10];
+
+    static {
+        int next = 0;
+        for (int square = 0; square < 64; square++) {
+            TRIANGLE[square] = -1;
+        }
+        for (int rank = 0; rank < 4; rank++) {
+            for (int file = rank; file < 4; file++) {
+                TRIANGLE[square(file, rank)] = next;
+                TRIANGLE_SQUARES[next++] = square(file, rank);
+            }
+        }
+    }
+
+    private final ByteBuffer[] tables = new ByteBuffer[NAMES.length];
+
+    Tablebase() {
+    }
+
+    // maps every table found in the directory, missing tables are simply never probed
+    public static Tablebase open(Path directory) throws IOException {
+        Tablebase tablebase = new Tablebase();
+        for (int table = 0; table < NAMES.length; table++) {
+            Path path = directory.resolve(NAMES[table] + EXTENSION);
+            if (!Files.exists(path)) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (channel.size() != HEADER_BYTES + 2L * positions(table) || buffer.getLong(0) != MAGIC
+                        || buffer.getLong(8) != 2L * positions(table)) {
+                    throw new IOException("Not a " + NAMES[table] + " tablebase: " + path);
+                }
+                tablebase.tables[table] = buffer.position(HEADER_BYTES).slice();
+            }
+        }
+        return tablebase;
+    }
+
+    public boolean isLoaded(String name) {
+        for (int table = 0; table < NAMES.length; table++) {
+            if (NAMES[table].equals(name)) {
+                return tables[table] != null;
+            }
+        }
+        return false;
+    }
+
+    // the stored value of the position, NOT_FOUND when no loaded table covers its material
+    public int probe(BitBoard bitBoard) {
+        int table = table(bitBoard);
+        if (table < 0 || tables[table] == null) {
+            return NOT_FOUND;
+        }
+        byte value = tables[table].get(index(table, bitBoard));
+        return value == ILLEGAL ? NOT_FOUND : value;
+    }
+
+    // 1 when the side to move wins, 0 for a draw, -1 when it loses
+    public static int wdl(int value) {
+        return Integer.signum(value);
+    }
+
+    public static int pliesToMate(int value) {
+        return value > 0 ? value : -value - 1;
+    }
+
+    void setTable(int table, ByteBuffer data) {
+        tables[table] = data;
+    }
+
+    // the table covering the material on the board, or -1
+    static int table(BitBoard bitBoard) {
+        int pieces = Long.bitCount(bitBoard.getOccupied());
+        if (pieces < 3 || pieces > MAX_PIECES) {
+            return -1;
+        }
+        int whiteExtra = Long.bitCount(bitBoard.getColor(BitBoard.WHITE)) - 1;
+        int blackExtra = Long.bitCount(bitBoard.getColor(BitBoard.BLACK)) - 1;
+        if (whiteExtra > 0 && blackExtra > 0) {
+            return -1;
+        }
+        int strong = whiteExtra > 0 ? BitBoard.WHITE : BitBoard.BLACK;
+        for (int table = 0; table < NAMES.length; table++) {
+            if (PIECES[table].length != pieces - 2) {
+                continue;
+            }
+            boolean match = true;
+            for (int type : PIECES[table]) {
+                match &= bitBoard.getPieces(strong, type) != 0;
+            }
+            if (match) {
+                return table;
+            }
+        }
+        return -1;
+    }
+
+    // index of the position in a table covering its material, the side to move included
+    static int index(int table, BitBoard bitBoard) {
+        int strong = bitBoard.getColor(BitBoard.WHITE) != bitBoard.getPieces(BitBoard.WHITE, BitBoard.KING)
+                ? BitBoard.WHITE : BitBoard.BLACK;
+        // a black stronger side is turned into a white one by mirroring the ranks
+        int flip = strong == BitBoard.WHITE ? 0 : 56;
+        int[] squares = new int[2 + PIECES[table].length];
+        squares[0] = bitBoard.kingSquare(strong) ^ flip;
+        squares[1] = bitBoard.kingSquare(BitBoard.opponent(strong)) ^ flip;
+        for (int i = 0; i < PIECES[table].length; i++) {
+            squares[2 + i] = Long.numberOfTrailingZeros(bitBoard.getPieces(strong, PIECES[table][i])) ^ flip;
+        }
+        int side = bitBoard.getSideToMove() == strong ? 0 : 1;
+        return side * positions(table) + index(table, squares);
+    }
+
+    // positions per side to move
+    static int positions(int table) {
+        int kings = hasPawns(table) ? 32 : 10;
+        return kings << (6 * (PIECES[table].length + 1));
+    }
+
+    static boolean hasPawns(int table) {
+        return PIECES[table][0] == BitBoard.PAWN;
+    }
+
+    // squares holds the stronger (white) king, the other king and then the pieces in PIECES order
+    static int index(int table, int[] squares) {
+        int king = squares[0];
+        int transform = 0;
+        int file = file(king);
+        int rank = rank(king);
+        if (file > 3) {
+            transform |= 1;
+            file = 7 - file;
+        }
+        if (!hasPawns(table)) {
+            if (rank > 3) {
+                transform |= 2;
+                rank = 7 - rank;
+            }
+            if (rank > file) {
+                transform |= 4;
+            } else if (rank == file) {
+                // the king is on the diagonal, the first piece off it decides whether to transpose
+                for (int i = 1; i < squares.length; i++) {
+                    int square = transform(transform, squares[i]);
+                    if (rank(square) != file(square)) {
+                        if (rank(square) > file(square)) {
+                            transform |= 4;
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+        king = transform(transform, king);
+        int index = hasPawns(table) ? rank(king) * 4 + file(king) : TRIANGLE[king];
+        for (int i = 1; i < squares.length; i++) {
+            index = index * 64 + transform(transform, squares[i]);
+        }
+        return index;
+    }
+
+    // false for indexes that don't stand for a position: overlapping pieces, pawns on the first or last rank
+    // or a non-canonical placement of a symmetric position
+    static boolean decode(int table, int index, int[] squares) {
+        int rest = index;
+        for (int i = squares.length - 1; i > 0; i--) {
+            squares[i] = rest & 63;
+            rest >>>= 6;
+        }
+        squares[0] = hasPawns(table) ? square(rest % 4, rest / 4) : TRIANGLE_SQUARES[rest];
+        for (int i = 0; i < squares.length; i++) {
+            for (int j = i + 1; j < squares.length; j++) {
+                if (squares[i] == squares[j]) {
+                    return false;
+                }
+            }
+        }
+        if (hasPawns(table)) {
+            int row = BitBoard.row(squares[2]);
+            if (row == 0 || row == 7) {
+                return false;
+            }
+        }
+        return index(table, squares) == index;
+    }
+
+    private static int transform(int transform, int square) {
+        int file = file(square);
+        int rank = rank(square);
+        if ((transform & 1) != 0) {
+            file = 7 - file;
+        }
+        if ((transform & 2) != 0) {
+            rank = 7 - rank;
+        }
+        if ((transform & 4) != 0) {
+            int swap = file;
+            file = rank;
+            rank = swap;
+        }
+        return square(file, rank);
+    }
+
+    private static int file(int square) {
+        return BitBoard.column(square);
+    }
+
+    private static int rank(int square) {
+        return 7 - BitBoard.row(square);
+    }
+
+    private static int square(int file, int rank) {
+        return BitBoard.square(7 - rank, file);
+    }
+}
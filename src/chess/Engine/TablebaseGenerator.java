@@ -0,0 +1,282 @@
+package chess.Engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import chess.Attacks;
+import chess.BitBoard;
+import chess.Move;
+
+// Builds the tablebases by retrograde analysis. Each position is set up once to find mates and stalemates,
+// count its moves inside the table and resolve the moves that leave it: captures always reach a drawn ending
+// and promotions are looked up in the tables built before. Results then spread backwards one ply at a time
+// through un-moves: a position lost in n plies makes every predecessor a win in n + 1, and a predecessor
+// lost once all its moves inside the table reach positions the opponent wins, unless some move escapes to
+// a draw. Positions never reached are draws.
+public class TablebaseGenerator {
+    private static final int MAX_LEVEL = 126;
+
+    private final Tablebase tablebase = new Tablebase();
+
+    private byte[] values;
+    private boolean[] resolved;
+    private boolean[] escapes;
+    private boolean[] retracted;
+    private byte[] remaining;
+    private int[][] levels;
+    private int[] levelSizes;
+
+    // generates a table, the tables it promotes into must have been generated first
+    public byte[] generate(int table) {
+        int size = Tablebase.positions(table);
+        values = new byte[2 * size];
+        resolved = new boolean[2 * size];
+        escapes = new boolean[2 * size];
+        retracted = new boolean[2 * size];
+        remaining = new byte[2 * size];
+        levels = new int[MAX_LEVEL + 1][];
+        levelSizes = new int[MAX_LEVEL + 1];
+
+        BitBoard bitBoard = new BitBoard();
+        int[] squares = new int[2 + Tablebase.PIECES[table].length];
+        int[] moves = new int[256];
+        int[] children = new int[256];
+        for (int index = 0; index < 2 * size; index++) {
+            if (!Tablebase.decode(table, index % size, squares)) {
+                illegal(index);
+                continue;
+            }
+            setUp(bitBoard, table, squares, index < size ? BitBoard.WHITE : BitBoard.BLACK);
+            int mover = bitBoard.getSideToMove();
+            // the side that just moved can't be left in check, this also rules out touching kings
+            if (bitBoard.getCheckers(BitBoard.opponent(mover)) != 0) {
+                illegal(index);
+                continue;
+            }
+            int count = bitBoard.generateLegalMoves(moves, 0);
+            if (count == 0) {
+                resolve(index, bitBoard.getCheckers(mover) != 0 ? (byte) -1 : 0);
+                if (values[index] != 0) {
+                    add(0, index);
+                }
+                continue;
+            }
+            int inside = 0;
+            int promotionWin = Integer.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                int move = moves[i];
+                if (bitBoard.pieceAt(Move.to(move)) != BitBoard.EMPTY) {
+                    // only the lone king captures, which leaves a drawn ending
+                    escapes[index] = true;
+                } else if (Move.isPromotion(move)) {
+                    escapes[index] = true;
+                    bitBoard.makeMove(move);
+                    int value = tablebase.probe(bitBoard);
+                    bitBoard.unmakeMove();
+                    if (value != Tablebase.NOT_FOUND && value < 0) {
+                        promotionWin = Math.min(promotionWin, Tablebase.pliesToMate(value) + 1);
+                    }
+                } else {
+                    bitBoard.makeMove(move);
+                    children[inside++] = Tablebase.index(table, bitBoard);
+                    bitBoard.unmakeMove();
+                }
+            }
+            // moves reaching symmetric positions count once, as the un-moves find them once
+            remaining[index] = (byte) distinct(children, inside);
+            if (promotionWin <= MAX_LEVEL) {
+                // resolved when its level comes up, unless a faster win turns up first
+                add(promotionWin, index);
+            }
+        }
+
+        for (int level = 0; level <= MAX_LEVEL; level++) {
+            for (int i = 0; i < levelSizes[level]; i++) {
+                int index = levels[level][i];
+                if (!resolved[index]) {
+                    resolve(index, (byte) level);
+                } else if (Tablebase.pliesToMate(values[index]) != level) {
+                    continue;
+                }
+                // a promotion win can also be queued by an un-move at the same level
+                if (!retracted[index]) {
+                    retracted[index] = true;
+                    retract(table, index, level, squares);
+                }
+            }
+            levels[level] = null;
+        }
+        tablebase.setTable(table, ByteBuffer.wrap(values));
+        return values;
+    }
+
+    // spreads the result of a position to the positions one un-move before it
+    private void retract(int table, int index, int level, int[] squares) {
+        int size = Tablebase.positions(table);
+        int side = index < size ? 0 : 1;
+        Tablebase.decode(table, index % size, squares);
+        boolean won = values[index] > 0;
+        long occupied = 0;
+        for (int square : squares) {
+            occupied |= BitBoard.bit(square);
+        }
+
+        int[] predecessors = new int[256];
+        int count = 0;
+        // the side not to move made the last move, 0 is the stronger side
+        int first = side == 1 ? 0 : 1;
+        int last = side == 1 ? squares.length - 1 : 1;
+        for (int piece = first; piece <= last; piece++) {
+            if (side == 1 && piece == 1) {
+                continue;
+            }
+            int square = squares[piece];
+            long from = unmoves(piece < 2 ? BitBoard.KING : Tablebase.PIECES[table][piece - 2], square, occupied);
+            for (; from != 0; from &= from - 1) {
+                squares[piece] = Long.numberOfTrailingZeros(from);
+                int predecessor = (1 - side) * size + Tablebase.index(table, squares);
+                if (values[predecessor] != Tablebase.ILLEGAL) {
+                    predecessors[count++] = predecessor;
+                }
+            }
+            squares[piece] = square;
+        }
+
+        count = distinct(predecessors, count);
+        for (int i = 0; i < count; i++) {
+            int predecessor = predecessors[i];
+            if (resolved[predecessor] || level + 1 > MAX_LEVEL) {
+                continue;
+            }
+            if (!won) {
+                resolve(predecessor, (byte) (level + 1));
+                add(level + 1, predecessor);
+            } else if (--remaining[predecessor] == 0 && !escapes[predecessor]) {
+                resolve(predecessor, (byte) -(level + 2));
+                add(level + 1, predecessor);
+            }
+        }
+    }
+
+    // squares a piece of the stronger (white) side or a king may have come from without capturing
+    private static long unmoves(int type, int square, long occupied) {
+        switch (type) {
+            case BitBoard.PAWN: {
+                long from = 0;
+                int row = BitBoard.row(square);
+                if (row <= 5 && (occupied & BitBoard.bit(square + 8)) == 0) {
+                    from |= BitBoard.bit(square + 8);
+                    if (row == 4 && (occupied & BitBoard.bit(square + 16)) == 0) {
+                        from |= BitBoard.bit(square + 16);
+                    }
+                }
+                return from;
+            }
+            case BitBoard.KNIGHT:
+                return Attacks.knight(square) & ~occupied;
+            case BitBoard.BISHOP:
+                return Attacks.bishop(square, occupied) & ~occupied;
+            case BitBoard.ROOK:
+                return Attacks.rook(square, occupied) & ~occupied;
+            case BitBoard.QUEEN:
+                return Attacks.queen(square, occupied) & ~occupied;
+            default:
+                return Attacks.king(square) & ~occupied;
+        }
+    }
+
+    private static void setUp(BitBoard bitBoard, int table, int[] squares, int sideToMove) {
+        bitBoard.clear();
+        bitBoard.place(BitBoard.code(BitBoard.WHITE, BitBoard.KING), squares[0]);
+        bitBoard.place(BitBoard.code(BitBoard.BLACK, BitBoard.KING), squares[1]);
+        for (int i = 2; i < squares.length; i++) {
+            bitBoard.place(BitBoard.code(BitBoard.WHITE, Tablebase.PIECES[table][i - 2]), squares[i]);
+        }
+        bitBoard.setSideToMove(sideToMove);
+        bitBoard.updateAttacks();
+    }
+
+    // sorts the first count values and removes duplicates, returning how many are left
+    private static int distinct(int[] array, int count) {
+        Arrays.sort(array, 0, count);
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (kept == 0 || array[kept - 1] != array[i]) {
+                array[kept++] = array[i];
+            }
+        }
+        return kept;
+    }
+
+    private void illegal(int index) {
+        values[index] = Tablebase.ILLEGAL;
+        resolved[index] = true;
+    }
+
+    private void resolve(int index, byte value) {
+        values[index] = value;
+        resolved[index] = true;
+    }
+
+    private void add(int level, int index) {
+        if (levels[level] == null) {
+            levels[level] = new int[1024];
+        } else if (levelSizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], levelSizes[level] * 2);
+        }
+        levels[level][levelSizes[level]++] = index;
+    }
+
+    static void write(Path path, byte[] values) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(Tablebase.HEADER_BYTES);
+            header.putLong(Tablebase.MAGIC).putLong(values.length).flip();
+            ByteBuffer buffer = ByteBuffer.wrap(values);
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    // usage: TablebaseGenerator [directory], writes every table with its statistics
+    public static void main(String[] args) throws IOException {
+        Path directory = Paths.get(args.length > 0 ? args[0] : "tablebases");
+        Files.createDirectories(directory);
+        TablebaseGenerator generator = new TablebaseGenerator();
+        for (int table = 0; table < Tablebase.NAMES.length; table++) {
+            long start = System.nanoTime();
+            byte[] values = generator.generate(table);
+            long wins = 0;
+            long draws = 0;
+            long losses = 0;
+            int longest = 0;
+            for (byte value : values) {
+                if (value == Tablebase.ILLEGAL) {
+                    continue;
+                }
+                if (value > 0) {
+                    wins++;
+                } else if (value < 0) {
+                    losses++;
+                } else {
+                    draws++;
+                }
+                longest = Math.max(longest, value == 0 ? 0 : Tablebase.pliesToMate(value));
+            }
+            write(directory.resolve(Tablebase.NAMES[table] + Tablebase.EXTENSION), values);
+            System.out.printf("%-5s positions %,10d  wins %,10d  draws %,10d  losses %,10d  longest mate %3d plies"
+                    + "  time %,d ms%n", Tablebase.NAMES[table], values.length, wins, draws, losses, longest,
+                    (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package chess.Engine;
+
+// Turns a clock into deadlines for one move. No new iteration is started after the soft deadline, the hard
+// deadline is polled inside the tree and stops the search outright. Deadlines are fixed when the manager is
+// created, so one manager can be shared by every thread searching the same move.
+public class TimeManager {
+    private static final int DEFAULT_MOVES_TO_GO = 30;
+    // kept back for move transmission and the time between the deadline and the search noticing it
+    private static final long OVERHEAD_MILLIS = 20;
+
+    private final long start = System.nanoTime();
+    private final long softMillis;
+    private final long hardMillis;
+
+    public TimeManager(long remainingMillis, long incrementMillis) {
+        this(remainingMillis, incrementMillis, 0);
+    }
+
+    // movesToGo is 0 when the clock covers the rest of the game
+    public TimeManager(long remainingMillis, long incrementMillis, int movesToGo) {
+        if (remainingMillis < 0 || incrementMillis < 0 || movesToGo < 0) {
+            throw new IllegalArgumentException("Clock values can't be negative");
+        }
+        long available = Math.max(0, remainingMillis - OVERHEAD_MILLIS);
+        int moves = movesToGo > 0 ? Math.min(movesToGo, DEFAULT_MOVES_TO_GO) : DEFAULT_MOVES_TO_GO;
+        long soft = available / moves + incrementMillis * 3 / 4;
+        hardMillis = Math.min(soft * 4, available);
+        softMillis = Math.min(soft, hardMillis);
+    }
+
+    private TimeManager(long moveMillis) {
+        softMillis = moveMillis;
+        hardMillis = moveMillis;
+    }
+
+    // spends exactly the given time on the move, whatever the clock
+    public static TimeManager fixed(long moveMillis) {
+        if (moveMillis < 0) {
+            throw new IllegalArgumentException("Move time can't be negative");
+        }
+        return new TimeManager(moveMillis);
+    }
+
+    public long getSoftMillis() {
+        return softMillis;
+    }
+
+    public long getHardMillis() {
+        return hardMillis;
+    }
+
+    public long elapsedMillis() {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    public boolean isSoftExpired() {
+        return elapsedMillis() >= softMillis;
+    }
+
+    public boolean isHardExpired() {
+        return elapsedMillis() >= hardMillis;
+    }
+}
@@ -0,0 +1,156 @@
+package chess.Engine;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+import chess.Move;
+
+// Lock-free table shared by search threads. Each entry is two longs, the key XOR the data and the data,
+// so a torn write from a racing thread fails the key check instead of returning garbage.
+public class TranspositionTable {
+    public static final int MIN_MEGABYTES = 16;
+    public static final int MAX_MEGABYTES = 4096;
+
+    public static final int BOUND_NONE = 0;
+    public static final int BOUND_UPPER = 1;
+    public static final int BOUND_LOWER = 2;
+    public static final int BOUND_EXACT = 3;
+
+    // entries per bucket: a depth-preferred slot followed by an always-replace slot
+    private static final int BUCKET_LONGS = 4;
+
+    private final long[] table;
+    private final int bucketMask;
+    private volatile int generation;
+
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+
+    public TranspositionTable(int megabytes) {
+        if (megabytes < MIN_MEGABYTES || megabytes > MAX_MEGABYTES) {
+            throw new IllegalArgumentException(
+                    "Transposition table size must be between " + MIN_MEGABYTES + " and " + MAX_MEGABYTES + " MB");
+        }
+        long buckets = Long.highestOneBit((long) megabytes * 1024 * 1024 / (BUCKET_LONGS * Long.BYTES));
+        table = new long[(int) (buckets * BUCKET_LONGS)];
+        bucketMask = (int) buckets - 1;
+    }
+
+    // packed data, or 0 on a miss
+    public long probe(long key) {
+        probes.increment();
+        int index = bucket(key);
+        for (int slot = index; slot < index + BUCKET_LONGS; slot += 2) {
+            long data = table[slot + 1];
+            if ((table[slot] ^ data) == key && data != 0) {
+                hits.increment();
+                return data;
+            }
+        }
+        if (table[index + 1] != 0 || table[index + 3] != 0) {
+            collisions.increment();
+        }
+        return 0;
+    }
+
+    public void store(long key, int move, int score, int depth, int bound) {
+        stores.increment();
+        int index = bucket(key);
+        int age = generation;
+        int slot = index;
+        long current = table[index + 1];
+        if ((table[index] ^ current) != key && current != 0 && age(current) == age && depth(current) > depth) {
+            slot = index + 2;
+            current = table[slot + 1];
+        }
+        // keep the known best move when a re-search of the same position didn't find one
+        if (move == Move.NONE && (table[slot] ^ current) == key) {
+            move = move(current);
+        }
+        long data = pack(move, score, depth, bound, age);
+        table[slot] = key ^ data;
+        table[slot + 1] = data;
+    }
+
+    // ages the entries of earlier searches so they get replaced first
+    public void newSearch() {
+        generation = (generation + 1) & 63;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0);
+        generation = 0;
+    }
+
+    // per mille of sampled depth-preferred slots written by the current search
+    public int getUsage() {
+        int sampled = Math.min(1000, bucketMask + 1);
+        int used = 0;
+        for (int i = 0; i < sampled; i++) {
+            long data = table[i * BUCKET_LONGS + 1];
+            if (data != 0 && age(data) == generation) {
+                used++;
+            }
+        }
+        return used * 1000 / sampled;
+    }
+
+    public long getSizeInBytes() {
+        return (long) table.length * Long.BYTES;
+    }
+
+    public long getProbes() {
+        return probes.sum();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getCollisions() {
+        return collisions.sum();
+    }
+
+    public long getStores() {
+        return stores.sum();
+    }
+
+    public void resetCounters() {
+        probes.reset();
+        hits.reset();
+        collisions.reset();
+        stores.reset();
+    }
+
+    // data layout: move 20 bits | score 16 bits | depth 8 bits | bound 2 bits | age 6 bits
+    private static long pack(int move, int score, int depth, int bound, int age) {
+        return (move & 0xFFFFFL) | ((long) (score & 0xFFFF) << 20) | ((long) (depth & 0xFF) << 36)
+                | ((long) bound << 44) | ((long) age << 46);
+    }
+
+    public static int move(long data) {
+        return (int) (data & 0xFFFFF);
+    }
+
+    public static int score(long data) {
+        return (short) (data >>> 20);
+    }
+
+    public static int depth(long data) {
+        return (int) ((data >>> 36) & 0xFF);
+    }
+
+    public static int bound(long data) {
+        return (int) ((data >>> 44) & 3);
+    }
+
+    private static int age(long data) {
+        return (int) ((data >>> 46) & 63);
+    }
+
+    private int bucket(long key) {
+        return ((int) (key ^ (key >>> 32)) & bucketMask) * BUCKET_LONGS;
+    }
+}
@@ -0,0 +1,257 @@
+package chess;
+
+// Tapered material and piece-square evaluation. The table sums are kept up to date by BitBoard.place/remove,
+// so a leaf only blends the middlegame and endgame sums and adds a few cheap positional terms.
+public class Evaluation {
+    public static final int MAX_PHASE = 24;
+    // middlegame and endgame structure scores for White, then the shield of each side's king per zone
+    static final int PAWN_TERMS = 8;
+
+    private static final int[] MIDDLEGAME_VALUES = { 100, 320, 330, 500, 900, 0 };
+    private static final int[] ENDGAME_VALUES = { 120, 300, 320, 530, 950, 0 };
+    private static final int[] PHASE_WEIGHTS = { 0, 1, 1, 2, 4, 0 };
+    private static final int BISHOP_PAIR = 30;
+    private static final int TEMPO = 10;
+    private static final int DOUBLED_MIDDLEGAME = 10;
+    private static final int DOUBLED_ENDGAME = 20;
+    private static final int ISOLATED_MIDDLEGAME = 10;
+    private static final int ISOLATED_ENDGAME = 15;
+    // by rank counted from the pawn's own side, 1 is its starting rank
+    private static final int[] PASSED_MIDDLEGAME = { 0, 5, 10, 15, 25, 40, 60, 0 };
+    private static final int[] PASSED_ENDGAME = { 0, 10, 15, 25, 45, 70, 110, 0 };
+    private static final int SHIELD_NEAR = 12;
+    private static final int SHIELD_FAR = 6;
+
+    // from White's point of view, a8 first like the bitboard squares
+    private static final int[][] MIDDLEGAME_TABLES = {
+            {
+                    0, 0, 0, 0, 0, 0, 0, 0,
+                    50, 50, 50, 50, 50, 50, 50, 50,
+                    10, 10, 20, 30, 30, 20, 10, 10,
+                    5, 5, 10, 25, 25, 10, 5, 5,
+                    0, 0, 0, 20, 20, 0, 0, 0,
+                    5, -5, -10, 0, 0, -10, -5, 5,
+                    5, 10, 10, -20, -20, 10, 10, 5,
+                    0, 0, 0, 0, 0, 0, 0, 0 },
+            {
+                    -50, -40, -30, -30, -30, -30, -40, -50,
+                    -40, -20, 0, 0, 0, 0, -20, -40,
+                    -30, 0, 10, 15, 15, 10, 0, -30,
+                    -30, 5, 15, 20, 20, 15, 5, -30,
+                    -30, 0, 15, 20, 20, 15, 0, -30,
+                    -30, 5, 10, 15, 15, 10, 5, -30,
+                    -40, -20, 0, 5, 5, 0, -20, -40,
+                    -50, -40, -30, -30, -30, -30, -40, -50 },
+            {
+                    -20, -10, -10, -10, -10, -10, -10, -20,
+                    -10, 0, 0, 0, 0, 0, 0, -10,
+                    -10, 0, 5, 10, 10, 5, 0, -10,
+                    -10, 5, 5, 10, 10, 5, 5, -10,
+                    -10, 0, 10, 10, 10, 10, 0, -10,
+                    -10, 10, 10, 10, 10, 10, 10, -10,
+                    -10, 5, 0, 0, 0, 0, 5, -10,
+                    -20, -10, -10, -10, -10, -10, -10, -20 },
+            {
+                    0, 0, 0, 0, 0, 0, 0, 0,
+                    5, 10, 10, 10, 10, 10, 10, 5,
+                    -5, 0, 0, 0, 0, 0, 0, -5,
+                    -5, 0, 0, 0, 0, 0, 0, -5,
+                    -5, 0, 0, 0, 0, 0, 0, -5,
+                    -5, 0, 0, 0, 0, 0, 0, -5,
+                    -5, 0, 0, 0, 0, 0, 0, -5,
+                    0, 0, 0, 5, 5, 0, 0, 0 },
+            {
+                    -20, -10, -10, -5, -5, -10, -10, -20,
+                    -10, 0, 0, 0, 0, 0, 0, -10,
+                    -10, 0, 5, 5, 5, 5, 0, -10,
+                    -5, 0, 5, 5, 5, 5, 0, -5,
+                    0, 0, 5, 5, 5, 5, 0, -5,
+                    -10, 5, 5, 5, 5, 5, 0, -10,
+                    -10, 0, 5, 0, 0, 0, 0, -10,
+                    -20, -10, -10, -5, -5, -10, -10, -20 },
+            {
+                    -30, -40, -40, -50, -50, -40, -40, -30,
+                    -30, -40, -40, -50, -50, -40, -40, -30,
+                    -30, -40, -40, -50, -50, -40, -40, -30,
+                    -30, -40, -40, -50, -50, -40, -40, -30,
+                    -20, -30, -30, -40, -40, -30, -30, -20,
+                    -10, -20, -20, -20, -20, -20, -20, -10,
+                    20, 20, 0, 0, 0, 0, 20, 20,
+                    20, 30, 10, 0, 0, 10, 30, 20 } };
+
+    // only pawns and the king change their preferences once the pieces come off
+    private static final int[] ENDGAME_PAWN_TABLE = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            80, 80, 80, 80, 80, 80, 80, 80,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            30, 30, 30, 30, 30, 30, 30, 30,
+            15, 15, 15, 15, 15, 15, 15, 15,
+            5, 5, 5, 5, 5, 5, 5, 5,
+            0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0 };
+
+    private static final int[] ENDGAME_KING_TABLE = {
+            -50, -40, -30, -20, -20, -30, -40, -50,
+            -30, -20, -10, 0, 0, -10, -20, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -30, 0, 0, 0, 0, -30, -30,
+            -50, -30, -30, -30, -30, -30, -30, -50 };
+
+    // signed scores per piece code and square, positive for White
+    private static final int[][] MIDDLEGAME = new int[12][64];
+    private static final int[][] ENDGAME = new int[12][64];
+
+    private static final long[] FILES = new long[8];
+    private static final long[] ADJACENT_FILES = new long[8];
+    // squares in front of a pawn on its own and the adjacent files, per colour
+    private static final long[][] PASSED_MASKS = new long[2][64];
+    // king zones are the a-c, d-e and f-h files, the shield is one and two ranks in front of the back rank
+    private static final long[][] SHIELD_NEAR_MASKS = new long[2][3];
+    private static final long[][] SHIELD_FAR_MASKS = new long[2][3];
+
+    static {
+        for (int type = BitBoard.PAWN; type <= BitBoard.KING; type++) {
+            int[] endgameTable = type == BitBoard.PAWN ? ENDGAME_PAWN_TABLE
+                    : type == BitBoard.KING ? ENDGAME_KING_TABLE : MIDDLEGAME_TABLES[type];
+            for (int square = 0; square < 64; square++) {
+                int white = BitBoard.code(BitBoard.WHITE, type);
+                int black = BitBoard.code(BitBoard.BLACK, type);
+                MIDDLEGAME[white][square] = MIDDLEGAME_VALUES[type] + MIDDLEGAME_TABLES[type][square];
+                ENDGAME[white][square] = ENDGAME_VALUES[type] + endgameTable[square];
+                // black reads the tables upside down
+                MIDDLEGAME[black][square] = -(MIDDLEGAME_VALUES[type] + MIDDLEGAME_TABLES[type][square ^ 56]);
+                ENDGAME[black][square] = -(ENDGAME_VALUES[type] + endgameTable[square ^ 56]);
+            }
+        }
+    }
+
+    static {
+        for (int file = 0; file < 8; file++) {
+            for (int row = 0; row < 8; row++) {
+                FILES[file] |= BitBoard.bit(BitBoard.square(row, file));
+            }
+        }
+        for (int file = 0; file < 8; file++) {
+            ADJACENT_FILES[file] = (file > 0 ? FILES[file - 1] : 0) | (file < 7 ? FILES[file + 1] : 0);
+        }
+        for (int square = 0; square < 64; square++) {
+            long span = FILES[BitBoard.column(square)] | ADJACENT_FILES[BitBoard.column(square)];
+            for (int row = 0; row < 8; row++) {
+                long rank = 0xFFL << (row * 8);
+                if (row < BitBoard.row(square)) {
+                    PASSED_MASKS[BitBoard.WHITE][square] |= span & rank;
+                } else if (row > BitBoard.row(square)) {
+                    PASSED_MASKS[BitBoard.BLACK][square] |= span & rank;
+                }
+            }
+        }
+        for (int zone = 0; zone < 3; zone++) {
+            long files = 0;
+            for (int file = 0; file < 8; file++) {
+                if (zone(file) == zone) {
+                    files |= FILES[file];
+                }
+            }
+            SHIELD_NEAR_MASKS[BitBoard.WHITE][zone] = files & (0xFFL << 48);
+            SHIELD_FAR_MASKS[BitBoard.WHITE][zone] = files & (0xFFL << 40);
+            SHIELD_NEAR_MASKS[BitBoard.BLACK][zone] = files & (0xFFL << 8);
+            SHIELD_FAR_MASKS[BitBoard.BLACK][zone] = files & (0xFFL << 16);
+        }
+    }
+
+    private Evaluation() {
+    }
+
+    public static int middlegame(int code, int square) {
+        return MIDDLEGAME[code][square];
+    }
+
+    public static int endgame(int code, int square) {
+        return ENDGAME[code][square];
+    }
+
+    public static int phase(int code) {
+        return PHASE_WEIGHTS[BitBoard.typeOf(code)];
+    }
+
+    public static int pieceValue(int type) {
+        return MIDDLEGAME_VALUES[type];
+    }
+
+    // centipawns from the side to move's point of view
+    public static int evaluate(BitBoard bitBoard) {
+        return evaluate(bitBoard, null);
+    }
+
+    // same, taking the pawn terms from the table when one is given
+    public static int evaluate(BitBoard bitBoard, PawnHashTable pawnTable) {
+        int[] pawnTerms;
+        int offset = 0;
+        if (pawnTable != null) {
+            offset = pawnTable.probe(bitBoard);
+            pawnTerms = pawnTable.values;
+        } else {
+            pawnTerms = new int[PAWN_TERMS];
+            evaluatePawns(bitBoard, pawnTerms, 0);
+        }
+        int whiteKing = zone(BitBoard.column(bitBoard.kingSquare(BitBoard.WHITE)));
+        int blackKing = zone(BitBoard.column(bitBoard.kingSquare(BitBoard.BLACK)));
+        int middlegame = bitBoard.getMiddlegameScore() + pawnTerms[offset] + pawnTerms[offset + 2 + whiteKing]
+                - pawnTerms[offset + 5 + blackKing];
+        int endgame = bitBoard.getEndgameScore() + pawnTerms[offset + 1];
+
+        int phase = Math.min(bitBoard.getPhase(), MAX_PHASE);
+        int score = (middlegame * phase + endgame * (MAX_PHASE - phase)) / MAX_PHASE;
+        if (Long.bitCount(bitBoard.getPieces(BitBoard.WHITE, BitBoard.BISHOP)) >= 2) {
+            score += BISHOP_PAIR;
+        }
+        if (Long.bitCount(bitBoard.getPieces(BitBoard.BLACK, BitBoard.BISHOP)) >= 2) {
+            score -= BISHOP_PAIR;
+        }
+        return (bitBoard.getSideToMove() == BitBoard.WHITE ? score : -score) + TEMPO;
+    }
+
+    // doubled, isolated and passed pawns plus the king shields, written to terms[offset..offset + PAWN_TERMS)
+    static void evaluatePawns(BitBoard bitBoard, int[] terms, int offset) {
+        int middlegame = 0;
+        int endgame = 0;
+        for (int color = BitBoard.WHITE; color <= BitBoard.BLACK; color++) {
+            long own = bitBoard.getPieces(color, BitBoard.PAWN);
+            long enemy = bitBoard.getPieces(BitBoard.opponent(color), BitBoard.PAWN);
+            int sign = color == BitBoard.WHITE ? 1 : -1;
+            for (int file = 0; file < 8; file++) {
+                int count = Long.bitCount(own & FILES[file]);
+                if (count > 1) {
+                    middlegame -= sign * DOUBLED_MIDDLEGAME * (count - 1);
+                    endgame -= sign * DOUBLED_ENDGAME * (count - 1);
+                }
+            }
+            for (long pawns = own; pawns != 0; pawns &= pawns - 1) {
+                int square = Long.numberOfTrailingZeros(pawns);
+                if ((own & ADJACENT_FILES[BitBoard.column(square)]) == 0) {
+                    middlegame -= sign * ISOLATED_MIDDLEGAME;
+                    endgame -= sign * ISOLATED_ENDGAME;
+                }
+                if ((enemy & PASSED_MASKS[color][square]) == 0) {
+                    int rank = color == BitBoard.WHITE ? 7 - BitBoard.row(square) : BitBoard.row(square);
+                    middlegame += sign * PASSED_MIDDLEGAME[rank];
+                    endgame += sign * PASSED_ENDGAME[rank];
+                }
+            }
+            for (int zone = 0; zone < 3; zone++) {
+                terms[offset + 2 + color * 3 + zone] = SHIELD_NEAR
+                        * Long.bitCount(own & SHIELD_NEAR_MASKS[color][zone])
+                        + SHIELD_FAR * Long.bitCount(own & SHIELD_FAR_MASKS[color][zone]);
+            }
+        }
+        terms[offset] = middlegame;
+        terms[offset + 1] = endgame;
+    }
+
+    private static int zone(int file) {
+        return file < 3 ? 0 : file < 5 ? 1 : 2;
+    }
+}
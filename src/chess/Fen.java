@@ -0,0 +1,141 @@
+package chess;
+
+public class Fen {
+    public static final String INITIAL = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private static final String PIECE_LETTERS = "PNBRQKpnbrqk";
+
+    private Fen() {
+    }
+
+    public static void load(String fen, BitBoard bitBoard) {
+        String[] fields = fen.trim().split("\\s+");
+        if (fields.length < 4) {
+            throw new ChessException("Invalid FEN: " + fen);
+        }
+        bitBoard.clear();
+        int row = 0;
+        int column = 0;
+        for (int i = 0; i < fields[0].length(); i++) {
+            char c = fields[0].charAt(i);
+            if (c == '/') {
+                // every rank must fill exactly eight files
+                if (column != 8) {
+                    throw new ChessException("Invalid FEN piece placement: " + fields[0]);
+                }
+                row++;
+                column = 0;
+            } else if (c >= '1' && c <= '8') {
+                column += c - '0';
+                if (column > 8) {
+                    throw new ChessException("Invalid FEN piece placement: " + fields[0]);
+                }
+            } else {
+                int code = PIECE_LETTERS.indexOf(c);
+                if (code < 0 || row > 7 || column > 7) {
+                    throw new ChessException("Invalid FEN piece placement: " + fields[0]);
+                }
+                bitBoard.place(code, BitBoard.square(row, column++));
+            }
+        }
+        if (row != 7 || column != 8 || Long.bitCount(bitBoard.getPieces(BitBoard.WHITE, BitBoard.KING)) != 1
+                || Long.bitCount(bitBoard.getPieces(BitBoard.BLACK, BitBoard.KING)) != 1) {
+            throw new ChessException("Invalid FEN piece placement: " + fields[0]);
+        }
+
+        if (!fields[1].equals("w") && !fields[1].equals("b")) {
+            throw new ChessException("Invalid FEN side to move: " + fields[1]);
+        }
+        bitBoard.setSideToMove(fields[1].equals("w") ? BitBoard.WHITE : BitBoard.BLACK);
+
+        int castlingRights = 0;
+        if (!fields[2].equals("-")) {
+            for (int i = 0; i < fields[2].length(); i++) {
+                int index = "KQkq".indexOf(fields[2].charAt(i));
+                if (index < 0) {
+                    throw new ChessException("Invalid FEN castling rights: " + fields[2]);
+                }
+                castlingRights |= 1 << index;
+            }
+        }
+        // a right without its king and rook in place can't be used, castling would move a rook that isn't there
+        bitBoard.setCastlingRights(castlingRights & bitBoard.castlingRightsInPlace());
+
+        if (!fields[3].equals("-")) {
+            int square = parseSquare(fields[3]);
+            int mover = BitBoard.opponent(bitBoard.getSideToMove());
+            // the square a pawn of the side that just moved skipped: on its third rank, empty, the pawn past it
+            int pushedPawn = mover == BitBoard.WHITE ? square - 8 : square + 8;
+            if (BitBoard.row(square) != (mover == BitBoard.WHITE ? 5 : 2) || bitBoard.pieceAt(square) != BitBoard.EMPTY
+                    || bitBoard.pieceAt(pushedPawn) != BitBoard.code(mover, BitBoard.PAWN)) {
+                throw new ChessException("Invalid FEN en passant square: " + fields[3]);
+            }
+            // same rule as makeMove: only kept when a pawn can capture onto it
+            if ((Attacks.pawn(mover, square) & bitBoard.getPieces(bitBoard.getSideToMove(), BitBoard.PAWN)) != 0) {
+                bitBoard.setEnPassantSquare(square);
+            }
+        }
+        int halfmoveClock;
+        int fullmoveNumber;
+        try {
+            halfmoveClock = fields.length > 4 ? Integer.parseInt(fields[4]) : 0;
+            fullmoveNumber = fields.length > 5 ? Integer.parseInt(fields[5]) : 1;
+        } catch (NumberFormatException e) {
+            throw new ChessException("Invalid FEN move counters: " + fen);
+        }
+        if (halfmoveClock < 0 || fullmoveNumber < 1) {
+            throw new ChessException("Invalid FEN move counters: " + fen);
+        }
+        bitBoard.setHalfmoveClock(halfmoveClock);
+        bitBoard.setFullmoveNumber(fullmoveNumber);
+        bitBoard.updateAttacks();
+    }
+
+    public static String toFen(BitBoard bitBoard) {
+        StringBuilder fen = new StringBuilder();
+        for (int row = 0; row < 8; row++) {
+            int empty = 0;
+            for (int column = 0; column < 8; column++) {
+                int code = bitBoard.pieceAt(BitBoard.square(row, column));
+                if (code == BitBoard.EMPTY) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append(empty);
+                    empty = 0;
+                }
+                fen.append(PIECE_LETTERS.charAt(code));
+            }
+            if (empty > 0) {
+                fen.append(empty);
+            }
+            if (row < 7) {
+                fen.append('/');
+            }
+        }
+        fen.append(bitBoard.getSideToMove() == BitBoard.WHITE ? " w " : " b ");
+        int castlingRights = bitBoard.getCastlingRights();
+        if (castlingRights == 0) {
+            fen.append('-');
+        }
+        for (int i = 0; i < 4; i++) {
+            if ((castlingRights & (1 << i)) != 0) {
+                fen.append("KQkq".charAt(i));
+            }
+        }
+        fen.append(' ');
+        int enPassantSquare = bitBoard.getEnPassantSquare();
+        fen.append(enPassantSquare == BitBoard.EMPTY ? "-" : BitBoard.squareName(enPassantSquare));
+        fen.append(' ').append(bitBoard.getHalfmoveClock()).append(' ').append(bitBoard.getFullmoveNumber());
+        return fen.toString();
+    }
+
+    public static int parseSquare(String name) {
+        if (name.length() != 2 || name.charAt(0) < 'a' || name.charAt(0) > 'h' || name.charAt(1) < '1'
+                || name.charAt(1) > '8') {
+            throw new ChessException("Invalid square: " + name);
+        }
+        return BitBoard.square(8 - (name.charAt(1) - '0'), name.charAt(0) - 'a');
+    }
+}
@@ -0,0 +1,54 @@
+package chess;
+
+// moves are packed into an int: source | target << 6 | promotion type << 12 | flag << 15
+public class Move {
+    public static final int NONE = 0;
+
+    public static final int NORMAL = 0;
+    public static final int PROMOTION = 1;
+    public static final int EN_PASSANT = 2;
+    public static final int CASTLING = 3;
+
+    private Move() {
+    }
+
+    public static int of(int from, int to) {
+        return from | (to << 6);
+    }
+
+    public static int of(int from, int to, int flag) {
+        return from | (to << 6) | (flag << 15);
+    }
+
+    public static int promotion(int from, int to, int type) {
+        return from | (to << 6) | (type << 12) | (PROMOTION << 15);
+    }
+
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    public static int promotionType(int move) {
+        return (move >>> 12) & 7;
+    }
+
+    public static int flag(int move) {
+        return (move >>> 15) & 3;
+    }
+
+    public static boolean isPromotion(int move) {
+        return flag(move) == PROMOTION;
+    }
+
+    public static String toString(int move) {
+        String text = BitBoard.squareName(from(move)) + BitBoard.squareName(to(move));
+        if (isPromotion(move)) {
+            text += "nbrq".charAt(promotionType(move) - BitBoard.KNIGHT);
+        }
+        return text;
+    }
+}
@@ -0,0 +1,11 @@
+package chess;
+
+// Told about every change a match makes to its position, after the change is complete
+public interface MoveListener {
+    void movePerformed(ChessMatch match, ChessPosition source, ChessPosition target);
+
+    // the pawn that just reached the last rank became a piece of this type instead of a queen
+    void piecePromoted(ChessMatch match, String pieceType);
+
+    void moveTakenBack(ChessMatch match);
+}
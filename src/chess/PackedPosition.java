@@ -0,0 +1,102 @@
+package chess;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Fixed 32 byte encoding of a position for bulk storage: the occupancy bitboard, a 4 bit piece code for
+// each occupied square in square order (32 pieces fill 16 bytes) and a word with the side to move, castling
+// rights, en passant square and move counters. The four words are big endian, and nothing is allocated on
+// either side so millions of positions can be written and read back without garbage.
+public final class PackedPosition {
+    public static final int BYTES = 32;
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final int MAX_COUNTER = 0xFFFF;
+
+    private PackedPosition() {
+    }
+
+    public static void encode(BitBoard bitBoard, byte[] out, int offset) {
+        long occupied = bitBoard.getOccupied();
+        LONGS.set(out, offset, occupied);
+        LONGS.set(out, offset + 8, pieces(bitBoard, occupied, 0));
+        LONGS.set(out, offset + 16, pieces(bitBoard, occupied, 16));
+        LONGS.set(out, offset + 24, state(bitBoard));
+    }
+
+    // absolute writes, the buffer's position is left alone
+    public static void encode(BitBoard bitBoard, ByteBuffer out, int offset) {
+        long occupied = bitBoard.getOccupied();
+        out.putLong(offset, occupied);
+        out.putLong(offset + 8, pieces(bitBoard, occupied, 0));
+        out.putLong(offset + 16, pieces(bitBoard, occupied, 16));
+        out.putLong(offset + 24, state(bitBoard));
+    }
+
+    // replaces whatever the bitboards held, the undo stack included
+    public static void decode(byte[] in, int offset, BitBoard bitBoard) {
+        decode((long) LONGS.get(in, offset), (long) LONGS.get(in, offset + 8), (long) LONGS.get(in, offset + 16),
+                (long) LONGS.get(in, offset + 24), bitBoard);
+    }
+
+    public static void decode(ByteBuffer in, int offset, BitBoard bitBoard) {
+        decode(in.getLong(offset), in.getLong(offset + 8), in.getLong(offset + 16), in.getLong(offset + 24),
+                bitBoard);
+    }
+
+    private static long pieces(BitBoard bitBoard, long occupied, int first) {
+        if (Long.bitCount(occupied) > 32) {
+            throw new ChessException("A position with more than 32 pieces can't be packed");
+        }
+        long word = 0;
+        int index = 0;
+        for (long remaining = occupied; remaining != 0; remaining &= remaining - 1, index++) {
+            if (index >= first && index < first + 16) {
+                int square = Long.numberOfTrailingZeros(remaining);
+                word |= (long) bitBoard.pieceAt(square) << ((index - first) * 4);
+            }
+        }
+        return word;
+    }
+
+    private static long state(BitBoard bitBoard) {
+        if (bitBoard.getHalfmoveClock() > MAX_COUNTER || bitBoard.getFullmoveNumber() > MAX_COUNTER) {
+            throw new ChessException("The move counters are too large to be packed");
+        }
+        return bitBoard.getSideToMove() | (long) bitBoard.getCastlingRights() << 1
+                | (long) (bitBoard.getEnPassantSquare() + 1) << 5 | (long) bitBoard.getHalfmoveClock() << 12
+                | (long) bitBoard.getFullmoveNumber() << 28;
+    }
+
+    private static void decode(long occupied, long low, long high, long state, BitBoard bitBoard) {
+        bitBoard.clear();
+        int index = 0;
+        for (long remaining = occupied; remaining != 0; remaining &= remaining - 1, index++) {
+            int code = (int) ((index < 16 ? low >>> (index * 4) : high >>> ((index - 16) * 4)) & 0xF);
+            if (code > 11) {
+                throw new ChessException("Invalid packed position");
+            }
+            bitBoard.place(code, Long.numberOfTrailingZeros(remaining));
+        }
+        if (Long.bitCount(bitBoard.getPieces(BitBoard.WHITE, BitBoard.KING)) != 1
+                || Long.bitCount(bitBoard.getPieces(BitBoard.BLACK, BitBoard.KING)) != 1) {
+            throw new ChessException("Invalid packed position");
+        }
+        bitBoard.setSideToMove((int) (state & 1));
+        int castlingRights = (int) (state >>> 1) & 0xF;
+        if ((castlingRights & ~bitBoard.castlingRightsInPlace()) != 0) {
+            throw new ChessException("Invalid packed position");
+        }
+        bitBoard.setCastlingRights(castlingRights);
+        int enPassantSquare = (int) (state >>> 5 & 0x7F) - 1;
+        if (enPassantSquare >= 64) {
+            throw new ChessException("Invalid packed position");
+        }
+        bitBoard.setEnPassantSquare(enPassantSquare);
+        bitBoard.setHalfmoveClock((int) (state >>> 12) & MAX_COUNTER);
+        bitBoard.setFullmoveNumber((int) (state >>> 28) & MAX_COUNTER);
+        bitBoard.updateAttacks();
+    }
+}
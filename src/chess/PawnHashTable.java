@@ -0,0 +1,62 @@
+package chess;
+
+import java.util.Arrays;
+
+// Caches pawn-structure scores by BitBoard.getPawnKey(). The pawns change far less often than the rest of the
+// position, so most evaluations find their pawn terms here. Not thread safe, every search thread owns one.
+public class PawnHashTable {
+    static final int ENTRY_INTS = Evaluation.PAWN_TERMS;
+
+    private final long[] keys;
+    final int[] values;
+    private final int mask;
+    private long probes;
+    private long hits;
+
+    public PawnHashTable(int entries) {
+        if (entries < 1 || Integer.bitCount(entries) != 1) {
+            throw new IllegalArgumentException("Pawn hash entries must be a power of two: " + entries);
+        }
+        keys = new long[entries];
+        values = new int[entries * ENTRY_INTS];
+        mask = entries - 1;
+        // empty slots hold key 0 with all terms 0, which is exactly the entry of a board without pawns
+    }
+
+    // offset of the position's terms in values, computed and stored on a miss
+    int probe(BitBoard bitBoard) {
+        long key = bitBoard.getPawnKey();
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        int offset = slot * ENTRY_INTS;
+        probes++;
+        if (keys[slot] == key) {
+            hits++;
+        } else {
+            keys[slot] = key;
+            Evaluation.evaluatePawns(bitBoard, values, offset);
+        }
+        return offset;
+    }
+
+    public long getProbes() {
+        return probes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public double getHitRate() {
+        return probes == 0 ? 0 : (double) hits / probes;
+    }
+
+    public void resetCounters() {
+        probes = 0;
+        hits = 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, 0);
+    }
+}
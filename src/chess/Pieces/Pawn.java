@@ -1,94 +1,54 @@
 package chess.Pieces;
 
 import boardgame.Board;
-import boardgame.Position;
-import chess.ChessMatch;
+import chess.Attacks;
+import chess.BitBoard;
 import chess.ChessPiece;
 import chess.Color;
 
 public class Pawn extends ChessPiece {
 
-    private ChessMatch chessMatch;
-
-    public Pawn(Board board, Color color, ChessMatch ChessMatch) {
+    public Pawn(Board board, Color color) {
         super(board, color);
-        this.chessMatch = ChessMatch;
     }
 
     @Override
-    public boolean[][] possibleMoves() {
-        boolean[][] matrix = new boolean[getBoard().getRows()][getBoard().getColumns()];
-        Position pos = new Position(0, 0);
-        if (getColor() == Color.WHITE) {
-            pos.setValues(position.getRow() - 1, position.getColumn());
-            if (getBoard().positionExists(pos) && !getBoard().thereIsAPiece(pos)) {
-                matrix[pos.getRow()][pos.getColumn()] = true;
-            }
-            pos.setValues(position.getRow() - 2, position.getColumn());
-            Position position2 = new Position(position.getRow() - 1, position.getColumn());
-            if (getBoard().positionExists(pos) && !getBoard().thereIsAPiece(pos) && getBoard().positionExists(position2)
-                    && !getBoard().thereIsAPiece(position2) && getMoveCount() == 0) {
-                matrix[pos.getRow()][pos.getColumn()] = true;
-            }
-            pos.setValues(position.getRow() - 1, position.getColumn() - 1);
-            if (getBoard().positionExists(pos) && isThereOpponentPiece(pos)) {
-                matrix[pos.getRow()][pos.getColumn()] = true;
-            }
-            pos.setValues(position.getRow() - 1, position.getColumn() + 1);
-            if (getBoard().positionExists(pos) && isThereOpponentPiece(pos)) {
-                matrix[pos.getRow()][pos.getColumn()] = true;
-            }
-            // #Special move En Passant white
-            if (position.getRow() == 3) {
-                Position positionEnPassantLeft = new Position(position.getRow(), position.getColumn() - 1);
-                if (getBoard().positionExists(positionEnPassantLeft) && isThereOpponentPiece(positionEnPassantLeft)
-                        && getBoard().piece(positionEnPassantLeft) == chessMatch.getEnPassantVulnerable()) {
-                    matrix[positionEnPassantLeft.getRow() - 1][positionEnPassantLeft.getColumn()] = true;
-                }
-                Position positionEnPassantRight = new Position(position.getRow(), position.getColumn() + 1);
-                if (getBoard().positionExists(positionEnPassantRight) && isThereOpponentPiece(positionEnPassantRight)
-                        && getBoard().piece(positionEnPassantRight) == chessMatch.getEnPassantVulnerable()) {
-                    matrix[positionEnPassantRight.getRow()-1][positionEnPassantRight.getColumn()] = true;
-                }
-            }
-        } else {
-            pos.setValues(position.getRow() + 1, position.getColumn());
-            if (getBoard().positionExists(pos) && !getBoard().thereIsAPiece(pos)) {
-                matrix[pos.getRow()][pos.getColumn()] = true;
-            }
-            pos.setValues(position.getRow() + 2, position.getColumn());
-            Position position2 = new Position(position.getRow() + 1, position.getColumn());
-            if (getBoard().positionExists(pos) && !getBoard().thereIsAPiece(pos) && getBoard().positionExists(position2)
-                    && !getBoard().thereIsAPiece(position2) && getMoveCount() == 0) {
-                matrix[pos.getRow()][pos.getColumn()] = true;
-            }
-            pos.setValues(position.getRow() + 1, position.getColumn() - 1);
-            if (getBoard().positionExists(pos) && isThereOpponentPiece(pos)) {
-                matrix[pos.getRow()][pos.getColumn()] = true;
-            }
-            pos.setValues(position.getRow() + 1, position.getColumn() + 1);
-            if (getBoard().positionExists(pos) && isThereOpponentPiece(pos)) {
-                matrix[pos.getRow()][pos.getColumn()] = true;
-            }
-            // #Special move En Passant black
-            if (position.getRow() == 4) {
-                Position positionEnPassantLeft = new Position(position.getRow(), position.getColumn() - 1);
-                if (getBoard().positionExists(positionEnPassantLeft) && isThereOpponentPiece(positionEnPassantLeft)
-                        && getBoard().piece(positionEnPassantLeft) == chessMatch.getEnPassantVulnerable()) {
-                    matrix[positionEnPassantLeft.getRow() + 1][positionEnPassantLeft.getColumn()] = true;
-                }
-                Position positionEnPassantRight = new Position(position.getRow(), position.getColumn() + 1);
-                if (getBoard().positionExists(positionEnPassantRight) && isThereOpponentPiece(positionEnPassantRight)
-                        && getBoard().piece(positionEnPassantRight) == chessMatch.getEnPassantVulnerable()) {
-                    matrix[positionEnPassantRight.getRow()+1][positionEnPassantRight.getColumn()] = true;
-                }
+    public long possibleTargets() {
+        int row = position.getRow();
+        int column = position.getColumn();
+        int direction = (getColor() == Color.WHITE) ? -1 : 1;
+        int next = row + direction;
+        if (next < 0 || next > 7) {
+            return 0;
+        }
+        BitBoard bitBoard = getBitBoard();
+        long occupied = bitBoard.getOccupied();
+        long opponentPieces = bitBoard.getColor(BitBoard.opponent(BitBoard.colorIndex(getColor())));
+        long targets = 0;
+
+        long single = BitBoard.bit(BitBoard.square(next, column));
+        if ((occupied & single) == 0) {
+            targets |= single;
+            int startRow = (getColor() == Color.WHITE) ? 6 : 1;
+            long twoSquares = BitBoard.bit(BitBoard.square(next + direction, column));
+            if (row == startRow && (occupied & twoSquares) == 0) {
+                targets |= twoSquares;
             }
         }
-        return matrix;
+        long attacks = Attacks.pawn(BitBoard.colorIndex(getColor()), getSquare());
+        targets |= opponentPieces & attacks;
+
+        // #Special move En Passant, only the side to move may use the en passant square
+        int enPassantSquare = bitBoard.getEnPassantSquare();
+        if (enPassantSquare != BitBoard.EMPTY && bitBoard.getSideToMove() == BitBoard.colorIndex(getColor())) {
+            targets |= attacks & BitBoard.bit(enPassantSquare);
+        }
+        return targets;
     }
 
-    public ChessMatch getChessMatch() {
-        return chessMatch;
+    @Override
+    public int getType() {
+        return BitBoard.PAWN;
     }
 
     @Override
@@ -1,7 +1,8 @@
 package chess.Pieces;
 
 import boardgame.Board;
-import boardgame.Position;
+import chess.Attacks;
+import chess.BitBoard;
 import chess.ChessPiece;
 import chess.Color;
 
@@ -12,50 +13,13 @@ public class Rook extends ChessPiece {
     }
 
     @Override
-    public boolean[][] possibleMoves() {
-        boolean[][] matrix = new boolean[getBoard().getRows()][getBoard().getColumns()];
-        Position pos = new Position(0, 0);
-        // above
-        pos.setValues(position.getRow() - 1, position.getColumn());
-        while (getBoard().positionExists(pos) && !getBoard().thereIsAPiece(pos)) {
-            matrix[pos.getRow()][pos.getColumn()] = true;
-            pos.setRow((pos.getRow() - 1));
-        }
-        if (getBoard().positionExists(pos) && isThereOpponentPiece(pos)) {
-            matrix[pos.getRow()][pos.getColumn()] = true;
-
-        }
-        // left
-        pos.setValues(position.getRow(), position.getColumn() - 1);
-        while (getBoard().positionExists(pos) && !getBoard().thereIsAPiece(pos)) {
-            matrix[pos.getRow()][pos.getColumn()] = true;
-            pos.setColumn((pos.getColumn() - 1));
-        }
-        if (getBoard().positionExists(pos) && isThereOpponentPiece(pos)) {
-            matrix[pos.getRow()][pos.getColumn()] = true;
-
-        }
-        // right
-        pos.setValues(position.getRow(), position.getColumn() + 1);
-        while (getBoard().positionExists(pos) && !getBoard().thereIsAPiece(pos)) {
-            matrix[pos.getRow()][pos.getColumn()] = true;
-            pos.setColumn(pos.getColumn() + 1);
-        }
-        if (getBoard().positionExists(pos) && isThereOpponentPiece(pos)) {
-            matrix[pos.getRow()][pos.getColumn()] = true;
-
-        }
-        // below
-        pos.setValues(position.getRow() + 1, position.getColumn());
-        while (getBoard().positionExists(pos) && !getBoard().thereIsAPiece(pos)) {
-            matrix[pos.getRow()][pos.getColumn()] = true;
-            pos.setRow((pos.getRow() + 1));
-        }
-        if (getBoard().positionExists(pos) && isThereOpponentPiece(pos)) {
-            matrix[pos.getRow()][pos.getColumn()] = true;
+    public long possibleTargets() {
+        return withoutOwnPieces(Attacks.rook(getSquare(), getBitBoard().getOccupied()));
+    }
 
-        }
-        return matrix;
+    @Override
+    public int getType() {
+        return BitBoard.ROOK;
     }
 
     @Override
@@ -0,0 +1,98 @@
+package chess;
+
+// Standard algebraic notation as found in PGN files, e.g. "Nbd7", "exd5", "e8=Q+", "O-O-O".
+public class San {
+    private static final String PIECE_LETTERS = "PNBRQK";
+    // one move buffer per thread, parsing runs once per ply on every importer worker
+    private static final ThreadLocal<int[]> MOVES = ThreadLocal.withInitial(() -> new int[256]);
+
+    private San() {
+    }
+
+    // the legal move the text denotes in the position, check and annotation suffixes are ignored
+    public static int parse(String san, BitBoard bitBoard) {
+        String text = san;
+        while (!text.isEmpty() && "+#!?".indexOf(text.charAt(text.length() - 1)) >= 0) {
+            text = text.substring(0, text.length() - 1);
+        }
+        // pseudo-legal moves, only the ones the text matches are played to check legality
+        int[] moves = MOVES.get();
+        int count = bitBoard.generateMoves(moves, 0);
+        if (text.equals("O-O") || text.equals("0-0") || text.equals("O-O-O") || text.equals("0-0-0")) {
+            boolean kingside = text.length() == 3;
+            for (int i = 0; i < count; i++) {
+                int move = moves[i];
+                if (Move.flag(move) == Move.CASTLING && (Move.to(move) > Move.from(move)) == kingside
+                        && bitBoard.isLegal(move)) {
+                    return move;
+                }
+            }
+            throw new ChessException("Illegal move: " + san);
+        }
+
+        int promotion = BitBoard.EMPTY;
+        int equals = text.indexOf('=');
+        if (equals >= 0) {
+            if (equals + 2 != text.length()) {
+                throw new ChessException("Invalid move: " + san);
+            }
+            promotion = PIECE_LETTERS.indexOf(text.charAt(equals + 1));
+            if (promotion <= BitBoard.PAWN || promotion == BitBoard.KING) {
+                throw new ChessException("Invalid move: " + san);
+            }
+            text = text.substring(0, equals);
+        } else if (text.length() > 2 && PIECE_LETTERS.indexOf(text.charAt(text.length() - 1)) > 0
+                && Character.isDigit(text.charAt(text.length() - 2))) {
+            // "e8Q" without the equals sign
+            promotion = PIECE_LETTERS.indexOf(text.charAt(text.length() - 1));
+            text = text.substring(0, text.length() - 1);
+        }
+        if (text.length() < 2 || promotion == BitBoard.KING) {
+            throw new ChessException("Invalid move: " + san);
+        }
+        int type = BitBoard.PAWN;
+        int start = 0;
+        if (Character.isUpperCase(text.charAt(0))) {
+            type = PIECE_LETTERS.indexOf(text.charAt(0));
+            if (type <= BitBoard.PAWN) {
+                throw new ChessException("Invalid move: " + san);
+            }
+            start = 1;
+        }
+        int target = Fen.parseSquare(text.substring(text.length() - 2));
+        int fromColumn = -1;
+        int fromRow = -1;
+        for (int i = start; i < text.length() - 2; i++) {
+            char c = text.charAt(i);
+            if (c >= 'a' && c <= 'h') {
+                fromColumn = c - 'a';
+            } else if (c >= '1' && c <= '8') {
+                fromRow = 8 - (c - '0');
+            } else if (c != 'x' && c != '-') {
+                throw new ChessException("Invalid move: " + san);
+            }
+        }
+
+        int found = Move.NONE;
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            int from = Move.from(move);
+            if (Move.to(move) != target || BitBoard.typeOf(bitBoard.pieceAt(from)) != type
+                    || Move.flag(move) == Move.CASTLING
+                    || (fromColumn >= 0 && BitBoard.column(from) != fromColumn)
+                    || (fromRow >= 0 && BitBoard.row(from) != fromRow)
+                    || (Move.isPromotion(move) ? Move.promotionType(move) != promotion : promotion != BitBoard.EMPTY)
+                    || !bitBoard.isLegal(move)) {
+                continue;
+            }
+            if (found != Move.NONE) {
+                throw new ChessException("Ambiguous move: " + san);
+            }
+            found = move;
+        }
+        if (found == Move.NONE) {
+            throw new ChessException("Illegal move: " + san);
+        }
+        return found;
+    }
+}
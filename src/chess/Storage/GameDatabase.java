@@ -0,0 +1,261 @@
+package chess.Storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import chess.BitBoard;
+import chess.ChessMatch;
+import chess.Fen;
+import chess.Move;
+import chess.PackedPosition;
+
+// A game store with a position index, written by GameDatabaseBuilder. The index holds a 16 byte entry for
+// every position of every game (Zobrist key, game id, ply and the move played from there) sorted by key, so
+// the games that reached a position are one binary search away and are read straight from the mapping.
+// The games themselves are read from their file one at a time when asked for.
+public class GameDatabase implements Closeable {
+    static final long GAMES_MAGIC = 0x4348455353444247L; // "CHESSDBG"
+    static final long INDEX_MAGIC = 0x4348455353444249L; // "CHESSDBI"
+    static final int HEADER_BYTES = 16;
+    static final int ENTRY_BYTES = 16;
+    static final String GAMES_FILE = "games.dat";
+    static final String OFFSETS_FILE = "games.idx";
+    static final String INDEX_FILE = "positions.idx";
+    // bytes before a game's moves: move count, result, flags and padding
+    static final int GAME_HEADER_BYTES = 8;
+    static final int CUSTOM_START = 1;
+    static final String[] RESULTS = { "*", "1-0", "0-1", "1/2-1/2" };
+
+    // the index is mapped in chunks, a mapping can't reach 2 GB; entries never straddle two chunks
+    private static final int CHUNK_SHIFT = 30;
+    private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+    private final FileChannel games;
+    private final MappedByteBuffer offsets;
+    private final MappedByteBuffer[] index;
+    private final int gameCount;
+    private final long entries;
+
+    private GameDatabase(FileChannel games, MappedByteBuffer offsets, MappedByteBuffer[] index, int gameCount,
+            long entries) {
+        this.games = games;
+        this.offsets = offsets;
+        this.index = index;
+        this.gameCount = gameCount;
+        this.entries = entries;
+    }
+
+    public static GameDatabase open(Path directory) throws IOException {
+        MappedByteBuffer offsets;
+        try (FileChannel channel = FileChannel.open(directory.resolve(OFFSETS_FILE), StandardOpenOption.READ)) {
+            offsets = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (offsets.capacity() < HEADER_BYTES || offsets.getLong(0) != GAMES_MAGIC) {
+            throw new IOException("Not a game database: " + directory);
+        }
+        long gameCount = offsets.getLong(8);
+        if (gameCount < 0 || gameCount > Integer.MAX_VALUE
+                || HEADER_BYTES + (gameCount + 1) * 8 != offsets.capacity()) {
+            throw new IOException("Not a game database: " + directory);
+        }
+
+        MappedByteBuffer[] index;
+        long entries;
+        try (FileChannel channel = FileChannel.open(directory.resolve(INDEX_FILE), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw new IOException("Not a game database: " + directory);
+            }
+            index = new MappedByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_SHIFT)];
+            for (int i = 0; i < index.length; i++) {
+                long start = (long) i << CHUNK_SHIFT;
+                index[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(size - start, 1L << CHUNK_SHIFT));
+            }
+            entries = index[0].getLong(8);
+            if (index[0].getLong(0) != INDEX_MAGIC || entries < 0
+                    || HEADER_BYTES + entries * ENTRY_BYTES != size) {
+                throw new IOException("Not a game database: " + directory);
+            }
+        }
+        return new GameDatabase(FileChannel.open(directory.resolve(GAMES_FILE), StandardOpenOption.READ), offsets,
+                index, (int) gameCount, entries);
+    }
+
+    public int getGameCount() {
+        return gameCount;
+    }
+
+    public long getEntryCount() {
+        return entries;
+    }
+
+    // streams the games that reached the match's current position
+    public Cursor query(ChessMatch match) {
+        return query(match.getZobristKey());
+    }
+
+    public Cursor query(long key) {
+        return new Cursor(key, bound(key, false));
+    }
+
+    // how many times games reached the position, without reading the entries
+    public long count(long key) {
+        return bound(key, true) - bound(key, false);
+    }
+
+    // the moves played from the position and how often, Move.NONE counting the games that ended there
+    public Map<Integer, Integer> nextMoves(long key) {
+        Map<Integer, Integer> moves = new HashMap<>();
+        Cursor cursor = query(key);
+        while (cursor.next()) {
+            moves.merge(cursor.getNextMove(), 1, Integer::sum);
+        }
+        return moves;
+    }
+
+    // "1-0", "0-1", "1/2-1/2" or "*"
+    public String getResult(int gameId) throws IOException {
+        return RESULTS[readGameHeader(gameId).get(4)];
+    }
+
+    public int[] getMoves(int gameId) throws IOException {
+        ByteBuffer header = readGameHeader(gameId);
+        int count = header.getInt(0);
+        int skip = (header.get(5) & CUSTOM_START) != 0 ? PackedPosition.BYTES : 0;
+        ByteBuffer buffer = read(gameOffset(gameId) + GAME_HEADER_BYTES + skip, count * 4);
+        int[] moves = new int[count];
+        buffer.asIntBuffer().get(moves);
+        return moves;
+    }
+
+    // sets the bitboards to the position the game started from
+    public void loadStartingPosition(int gameId, BitBoard bitBoard) throws IOException {
+        ByteBuffer header = readGameHeader(gameId);
+        if ((header.get(5) & CUSTOM_START) == 0) {
+            Fen.load(Fen.INITIAL, bitBoard);
+            return;
+        }
+        PackedPosition.decode(read(gameOffset(gameId) + GAME_HEADER_BYTES, PackedPosition.BYTES), 0, bitBoard);
+    }
+
+    @Override
+    public void close() throws IOException {
+        games.close();
+    }
+
+    // the entries of one position in game id and ply order, read lazily from the mapping
+    public class Cursor {
+        private final long key;
+        private long next;
+        private int gameId;
+        private int ply;
+        private int nextMove;
+
+        Cursor(long key, long first) {
+            this.key = key;
+            this.next = first;
+        }
+
+        // moves to the next game, false once there is none
+        public boolean next() {
+            if (next >= entries || entryKey(next) != key) {
+                return false;
+            }
+            long value = entryValue(next++);
+            gameId = (int) (value >>> 32);
+            ply = (int) value >>> 17;
+            nextMove = (int) value & 0x1FFFF;
+            return true;
+        }
+
+        public int getGameId() {
+            return gameId;
+        }
+
+        // plies played in the game before it reached the position
+        public int getPly() {
+            return ply;
+        }
+
+        // the move the game went on with, Move.NONE when it ended in the position
+        public int getNextMove() {
+            return nextMove;
+        }
+    }
+
+    // index of the first entry with a key above, or with upper false at least, the given one
+    private long bound(long key, boolean upper) {
+        long low = 0;
+        long high = entries - 1;
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            long middleKey = entryKey(middle);
+            if (middleKey < key || (upper && middleKey == key)) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private long entryKey(long entry) {
+        long position = HEADER_BYTES + entry * ENTRY_BYTES;
+        return index[(int) (position >>> CHUNK_SHIFT)].getLong((int) (position & CHUNK_MASK));
+    }
+
+    private long entryValue(long entry) {
+        long position = HEADER_BYTES + entry * ENTRY_BYTES + 8;
+        return index[(int) (position >>> CHUNK_SHIFT)].getLong((int) (position & CHUNK_MASK));
+    }
+
+    private long gameOffset(int gameId) {
+        if (gameId < 0 || gameId >= gameCount) {
+            throw new IllegalArgumentException("There is no game " + gameId);
+        }
+        return offsets.getLong(HEADER_BYTES + gameId * 8);
+    }
+
+    private ByteBuffer readGameHeader(int gameId) throws IOException {
+        return read(gameOffset(gameId), GAME_HEADER_BYTES);
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (games.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Truncated game file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    // usage: GameDatabase <directory> [fen]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("usage: GameDatabase <directory> [fen]");
+            return;
+        }
+        try (GameDatabase database = GameDatabase.open(Paths.get(args[0]))) {
+            ChessMatch match = new ChessMatch(args.length > 1 ? args[1] : Fen.INITIAL);
+            long start = System.nanoTime();
+            Map<Integer, Integer> moves = database.nextMoves(match.getZobristKey());
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%,d games, %,d positions indexed, query %.3f ms%n", database.getGameCount(),
+                    database.getEntryCount(), elapsed / 1e6);
+            moves.entrySet().stream().sorted((a, b) -> Integer.compare(b.getValue(), a.getValue()))
+                    .forEach(e -> System.out.printf("  %-6s %,d%n",
+                            e.getKey() == Move.NONE ? "(end)" : Move.toString(e.getKey()), e.getValue()));
+        }
+    }
+}
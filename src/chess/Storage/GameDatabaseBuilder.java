@@ -0,0 +1,400 @@
+package chess.Storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import chess.BitBoard;
+import chess.Fen;
+import chess.Move;
+import chess.PackedPosition;
+import chess.San;
+
+// Writes a GameDatabase. Games go to the game file as they are added, while their index entries collect in a
+// run in memory; a full run is sorted and written to a temporary file, and finish merges the sorted runs
+// into the index. Memory stays at one run however many games there are.
+public class GameDatabaseBuilder {
+    // plies past this aren't indexed, the ply shares its word with the move
+    private static final int MAX_INDEXED_PLIES = 1 << 15;
+    private static final int MAX_RUN_ENTRIES = Integer.MAX_VALUE / GameDatabase.ENTRY_BYTES;
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private final Path directory;
+    private final FileChannel games;
+    private final ByteBuffer gameBuffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+    private final long[] runKeys;
+    private final long[] runValues;
+    private final List<Path> runs = new ArrayList<>();
+    private final AtomicLong errors = new AtomicLong();
+    private long gamesPosition = GameDatabase.HEADER_BYTES;
+    private long[] offsets = new long[1024];
+    private int gameCount;
+    private int runSize;
+    private long entries;
+    private boolean finished;
+
+    public GameDatabaseBuilder(Path directory, int runEntries) throws IOException {
+        if (runEntries < 1 || runEntries > MAX_RUN_ENTRIES) {
+            throw new IllegalArgumentException("Invalid run size: " + runEntries);
+        }
+        Files.createDirectories(directory);
+        this.directory = directory;
+        games = FileChannel.open(directory.resolve(GameDatabase.GAMES_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        runKeys = new long[runEntries];
+        runValues = new long[runEntries];
+    }
+
+    // the id of the game, or -1 when it has an illegal or unreadable move and was left out;
+    // safe to call from several threads, the moves are resolved before the builder is locked
+    public int add(PgnGame game) throws IOException {
+        List<String> sans = game.getMoves();
+        int[] moves = new int[sans.size()];
+        BitBoard bitBoard = new BitBoard();
+        BitBoard start;
+        try {
+            Fen.load(game.getStartingFen(), bitBoard);
+            start = game.getTag("FEN") != null ? new BitBoard(bitBoard) : null;
+            for (int i = 0; i < moves.length; i++) {
+                moves[i] = San.parse(sans.get(i), bitBoard);
+                bitBoard.makeMove(moves[i]);
+            }
+        } catch (RuntimeException e) {
+            // whatever the failure, it's this game's, the build goes on without it
+            errors.incrementAndGet();
+            return -1;
+        }
+        return add(start, moves, moves.length, game.getResult());
+    }
+
+    // a game of legal moves from start, null for the initial position; the moves aren't checked
+    public int add(BitBoard start, int[] moves, int count, String result) throws IOException {
+        BitBoard bitBoard = new BitBoard();
+        byte[] packed = null;
+        if (start == null) {
+            Fen.load(Fen.INITIAL, bitBoard);
+        } else {
+            packed = new byte[PackedPosition.BYTES];
+            PackedPosition.encode(start, packed, 0);
+            PackedPosition.decode(packed, 0, bitBoard);
+        }
+        long[] keys = new long[count + 1];
+        for (int i = 0; i < count; i++) {
+            keys[i] = bitBoard.getKey();
+            bitBoard.makeMove(moves[i]);
+        }
+        keys[count] = bitBoard.getKey();
+        int resultCode = Arrays.asList(GameDatabase.RESULTS).indexOf(result);
+        return append(packed, moves, count, keys, Math.max(resultCode, 0));
+    }
+
+    private synchronized int append(byte[] packed, int[] moves, int count, long[] keys, int result)
+            throws IOException {
+        if (finished) {
+            throw new IllegalStateException("The database is already written");
+        }
+        int id = gameCount++;
+        if (id == offsets.length) {
+            offsets = Arrays.copyOf(offsets, id * 2);
+        }
+        offsets[id] = gamesPosition;
+
+        int bytes = GameDatabase.GAME_HEADER_BYTES + (packed != null ? packed.length : 0) + count * 4;
+        ByteBuffer buffer = gameBuffer;
+        if (bytes > gameBuffer.remaining()) {
+            flushGames();
+            if (bytes > gameBuffer.capacity()) {
+                buffer = ByteBuffer.allocate(bytes);
+            }
+        }
+        buffer.putInt(count).put((byte) result).put((byte) (packed != null ? GameDatabase.CUSTOM_START : 0))
+                .putShort((short) 0);
+        if (packed != null) {
+            buffer.put(packed);
+        }
+        for (int i = 0; i < count; i++) {
+            buffer.putInt(moves[i]);
+        }
+        if (buffer != gameBuffer) {
+            buffer.flip();
+            write(games, buffer, gamesPosition);
+        }
+        gamesPosition += bytes;
+
+        for (int ply = 0; ply <= Math.min(count, MAX_INDEXED_PLIES - 1); ply++) {
+            int next = ply < count ? moves[ply] : Move.NONE;
+            runKeys[runSize] = keys[ply];
+            runValues[runSize] = (long) id << 32 | (long) ply << 17 | next;
+            if (++runSize == runKeys.length) {
+                writeRun();
+            }
+        }
+        return id;
+    }
+
+    // writes the game offsets and merges the runs into the index
+    public synchronized void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        flushGames();
+        write(games, header(GameDatabase.GAMES_MAGIC, gameCount), 0);
+        games.close();
+        offsets = Arrays.copyOf(offsets, Math.max(offsets.length, gameCount + 1));
+        offsets[gameCount] = gamesPosition;
+        try (FileChannel channel = open(directory.resolve(GameDatabase.OFFSETS_FILE))) {
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+            buffer.put(header(GameDatabase.GAMES_MAGIC, gameCount));
+            for (int i = 0; i <= gameCount; i++) {
+                if (!buffer.hasRemaining()) {
+                    flush(channel, buffer);
+                }
+                buffer.putLong(offsets[i]);
+            }
+            flush(channel, buffer);
+        }
+        if (runSize > 0) {
+            writeRun();
+        }
+        merge();
+    }
+
+    public synchronized int getGames() {
+        return gameCount;
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public synchronized long getEntries() {
+        return entries;
+    }
+
+    public synchronized int getRuns() {
+        return runs.size();
+    }
+
+    private void writeRun() throws IOException {
+        sort(runKeys, runValues, 0, runSize);
+        Path path = directory.resolve("run-" + runs.size() + ".tmp");
+        try (FileChannel channel = open(path)) {
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+            for (int i = 0; i < runSize; i++) {
+                if (!buffer.hasRemaining()) {
+                    flush(channel, buffer);
+                }
+                buffer.putLong(runKeys[i]).putLong(runValues[i]);
+            }
+            flush(channel, buffer);
+        }
+        runs.add(path);
+        entries += runSize;
+        runSize = 0;
+    }
+
+    // k-way merge of the sorted runs, the smallest current entry of all runs is written next
+    private void merge() throws IOException {
+        PriorityQueue<RunReader> queue = new PriorityQueue<>(Math.max(runs.size(), 1),
+                (a, b) -> compare(a.key, a.value, b.key, b.value));
+        for (Path run : runs) {
+            RunReader reader = new RunReader(run);
+            if (reader.advance()) {
+                queue.add(reader);
+            }
+        }
+        try (FileChannel channel = open(directory.resolve(GameDatabase.INDEX_FILE))) {
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+            buffer.put(header(GameDatabase.INDEX_MAGIC, entries));
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                if (!buffer.hasRemaining()) {
+                    flush(channel, buffer);
+                }
+                buffer.putLong(reader.key).putLong(reader.value);
+                if (reader.advance()) {
+                    queue.add(reader);
+                }
+            }
+            flush(channel, buffer);
+        }
+        for (Path run : runs) {
+            Files.delete(run);
+        }
+    }
+
+    private static class RunReader {
+        private final MappedByteBuffer buffer;
+        private int position;
+        long key;
+        long value;
+
+        RunReader(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+
+        boolean advance() {
+            if (position == buffer.capacity()) {
+                return false;
+            }
+            key = buffer.getLong(position);
+            value = buffer.getLong(position + 8);
+            position += GameDatabase.ENTRY_BYTES;
+            return true;
+        }
+    }
+
+    // entries order by key, then game and ply, which is the order they appear in for a position
+    private static int compare(long key, long value, long otherKey, long otherValue) {
+        int comparison = Long.compare(key, otherKey);
+        return comparison != 0 ? comparison : Long.compare(value, otherValue);
+    }
+
+    // quicksort of the entries in [from, to), keys and values moved together
+    static void sort(long[] keys, long[] values, int from, int to) {
+        while (to - from > INSERTION_SORT_THRESHOLD) {
+            int last = to - 1;
+            int middle = (from + last) >>> 1;
+            // median of three, left in the middle as the pivot so neither side can end up empty
+            if (compare(keys[middle], values[middle], keys[from], values[from]) < 0) {
+                swap(keys, values, middle, from);
+            }
+            if (compare(keys[last], values[last], keys[from], values[from]) < 0) {
+                swap(keys, values, last, from);
+            }
+            if (compare(keys[last], values[last], keys[middle], values[middle]) < 0) {
+                swap(keys, values, last, middle);
+            }
+            long pivotKey = keys[middle];
+            long pivotValue = values[middle];
+            int i = from - 1;
+            int j = to;
+            while (true) {
+                do {
+                    i++;
+                } while (compare(keys[i], values[i], pivotKey, pivotValue) < 0);
+                do {
+                    j--;
+                } while (compare(keys[j], values[j], pivotKey, pivotValue) > 0);
+                if (i >= j) {
+                    break;
+                }
+                swap(keys, values, i, j);
+            }
+            // the smaller side recursively, the larger one in this loop, so the stack stays shallow
+            if (j + 1 - from < to - j - 1) {
+                sort(keys, values, from, j + 1);
+                from = j + 1;
+            } else {
+                sort(keys, values, j + 1, to);
+                to = j + 1;
+            }
+        }
+        for (int i = from + 1; i < to; i++) {
+            long key = keys[i];
+            long value = values[i];
+            int j = i - 1;
+            for (; j >= from && compare(keys[j], values[j], key, value) > 0; j--) {
+                keys[j + 1] = keys[j];
+                values[j + 1] = values[j];
+            }
+            keys[j + 1] = key;
+            values[j + 1] = value;
+        }
+    }
+
+    private static void swap(long[] keys, long[] values, int i, int j) {
+        long key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        long value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+
+    private void flushGames() throws IOException {
+        gameBuffer.flip();
+        write(games, gameBuffer, gamesPosition - gameBuffer.remaining());
+        gameBuffer.clear();
+    }
+
+    private static ByteBuffer header(long magic, long count) {
+        ByteBuffer header = ByteBuffer.allocate(GameDatabase.HEADER_BYTES);
+        header.putLong(magic).putLong(count).flip();
+        return header;
+    }
+
+    private static FileChannel open(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // usage: GameDatabaseBuilder <directory> <pgn files...> [--threads n] [--run-entries n]
+    public static void main(String[] args) throws IOException {
+        List<Path> files = new ArrayList<>();
+        int threads = Runtime.getRuntime().availableProcessors();
+        int runEntries = 1 << 22;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--run-entries") && i + 1 < args.length) {
+                runEntries = Integer.parseInt(args[++i]);
+            } else {
+                files.add(Paths.get(args[i]));
+            }
+        }
+        if (files.size() < 2) {
+            System.out.println("usage: GameDatabaseBuilder <directory> <pgn files...> [--threads n] [--run-entries n]");
+            return;
+        }
+        long start = System.nanoTime();
+        GameDatabaseBuilder builder = new GameDatabaseBuilder(files.get(0), runEntries);
+        PgnImporter importer = new PgnImporter(threads);
+        importer.setHandler((gameNumber, game) -> {
+            try {
+                builder.add(game);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        for (Path file : files.subList(1, files.size())) {
+            PgnImporter.Report report = importer.importFile(file);
+            System.out.printf("%s: %,d games, %,d errors%n", file, report.getGames(), report.getErrorCount());
+        }
+        long merge = System.nanoTime();
+        builder.finish();
+        long end = System.nanoTime();
+        System.out.printf("games %,d  entries %,d  runs %d  import %.2f s  merge %.2f s  %,.0f entries/s%n",
+                builder.getGames(), builder.getEntries(), builder.getRuns(), (merge - start) / 1e9,
+                (end - merge) / 1e9, builder.getEntries() / ((end - start) / 1e9));
+    }
+}
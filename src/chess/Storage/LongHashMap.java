@@ -0,0 +1,129 @@
+package chess.Storage;
+
+// Open-addressing map from long to long, for the millions of ids a HashMap<Long, Long> would box objects for.
+class LongHashMap {
+    // marks an empty slot, the key itself is kept on the side
+    private static final long FREE = 0;
+
+    private long[] keys = new long[1 << 10];
+    private long[] values = new long[keys.length];
+    private int mask = keys.length - 1;
+    private int size;
+    private boolean hasFree;
+    private long freeValue;
+
+    // replaces the value of a key already present
+    void put(long key, long value) {
+        if (key == FREE) {
+            size += hasFree ? 0 : 1;
+            hasFree = true;
+            freeValue = value;
+            return;
+        }
+        int i = index(key);
+        while (keys[i] != FREE && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        values[i] = value;
+        if (keys[i] == FREE) {
+            keys[i] = key;
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+        }
+    }
+
+    boolean containsKey(long key) {
+        if (key == FREE) {
+            return hasFree;
+        }
+        for (int i = index(key);; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return true;
+            }
+            if (keys[i] == FREE) {
+                return false;
+            }
+        }
+    }
+
+    boolean remove(long key) {
+        if (key == FREE) {
+            boolean removed = hasFree;
+            size -= removed ? 1 : 0;
+            hasFree = false;
+            return removed;
+        }
+        int i = index(key);
+        while (keys[i] != key) {
+            if (keys[i] == FREE) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        // shifts back the keys after it that would no longer be found past the hole
+        int hole = i;
+        for (int j = (i + 1) & mask; keys[j] != FREE; j = (j + 1) & mask) {
+            if (((j - index(keys[j])) & mask) >= ((j - hole) & mask)) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        keys[hole] = FREE;
+        size--;
+        return true;
+    }
+
+    long get(long key, long missing) {
+        if (key == FREE) {
+            return hasFree ? freeValue : missing;
+        }
+        for (int i = index(key);; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+            if (keys[i] == FREE) {
+                return missing;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Long.MAX_VALUE when empty
+    long minValue() {
+        long min = hasFree ? freeValue : Long.MAX_VALUE;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE) {
+                min = Math.min(min, values[i]);
+            }
+        }
+        return min;
+    }
+
+    private int index(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new long[keys.length];
+        mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != FREE) {
+                int i = index(oldKeys[j]);
+                while (keys[i] != FREE) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+}
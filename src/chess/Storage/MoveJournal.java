@@ -0,0 +1,646 @@
+package chess.Storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import chess.BitBoard;
+import chess.ChessMatch;
+import chess.ChessPosition;
+import chess.MoveListener;
+import chess.PackedPosition;
+
+// Append-only journal of every move made in the attached matches, so games in progress survive a restart.
+// Records are 16 bytes: the match id, a word with the record type and its squares, and a checksum that
+// tells a torn write from a record. A match starts with its packed position in the four records after its
+// START, then gets one record per move, promotion and take back, and an END when it's detached.
+// Records go straight into a memory-mapped segment file; when it's full the next one is created, and a
+// journal opened again always starts a new segment so a torn tail is never written over.
+// Retention: at every new segment, the segments older than the oldest START of a match still journaled are
+// deleted, so the journal only grows with the matches in progress. A match stays journaled from its START
+// until it's detached; one never detached keeps its segments forever, and a match rebuilt by recover that
+// isn't resumed before the first new segment is given up with its old segments.
+public class MoveJournal implements Closeable {
+    static final long MAGIC = 0x4348455353534A31L; // "CHESSSJ1"
+    static final int RECORD_BYTES = 16;
+
+    static final int START = 1;
+    static final int POSITION = 2;
+    static final int MOVE = 3;
+    static final int PROMOTION = 4;
+    static final int TAKE_BACK = 5;
+    static final int END = 6;
+
+    private static final int POSITION_RECORDS = PackedPosition.BYTES / 8;
+    private static final String PIECE_LETTERS = "PNBRQK";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    public static class Options {
+        private long segmentBytes = 64L << 20;
+        private int syncEvery;
+        private long syncIntervalMillis = 1000;
+
+        // size of each segment file
+        public Options segmentBytes(long bytes) {
+            if (bytes < RECORD_BYTES * (POSITION_RECORDS + 2) || bytes > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Invalid segment size: " + bytes);
+            }
+            segmentBytes = bytes - bytes % RECORD_BYTES;
+            return this;
+        }
+
+        // records appended between two fsyncs, 1 makes every move durable before it returns,
+        // 0 leaves it to the timer
+        public Options syncEvery(int records) {
+            if (records < 0) {
+                throw new IllegalArgumentException("Invalid sync batch: " + records);
+            }
+            syncEvery = records;
+            return this;
+        }
+
+        // longest time an appended record waits for an fsync, 0 leaves it to the operating system
+        public Options syncIntervalMillis(long millis) {
+            if (millis < 0) {
+                throw new IllegalArgumentException("Invalid sync interval: " + millis);
+            }
+            syncIntervalMillis = millis;
+            return this;
+        }
+    }
+
+    public static class Recovery {
+        private final Map<Long, ChessMatch> matches;
+        private final Map<Long, Integer> startSegments;
+        private final long records;
+        private final long replayedRecords;
+        private final long endedMatches;
+        private final Set<Long> failedMatches;
+        private final long elapsedNanos;
+
+        Recovery(Map<Long, ChessMatch> matches, Map<Long, Integer> startSegments, long records,
+                long replayedRecords, long endedMatches, Set<Long> failedMatches, long elapsedNanos) {
+            this.matches = matches;
+            this.startSegments = startSegments;
+            this.records = records;
+            this.replayedRecords = replayedRecords;
+            this.endedMatches = endedMatches;
+            this.failedMatches = failedMatches;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        // the matches still in progress by id, none of them is attached to a journal yet
+        public Map<Long, ChessMatch> getMatches() {
+            return matches;
+        }
+
+        // number of the segment holding the START of a rebuilt match, its records begin there
+        int getStartSegment(long matchId) {
+            Integer segment = startSegments.get(matchId);
+            if (segment == null) {
+                throw new IllegalArgumentException("Match " + matchId + " wasn't recovered");
+            }
+            return segment;
+        }
+
+        public long getRecords() {
+            return records;
+        }
+
+        public long getReplayedRecords() {
+            return replayedRecords;
+        }
+
+        public long getEndedMatches() {
+            return endedMatches;
+        }
+
+        // matches whose records couldn't be replayed, they are left out
+        public Set<Long> getFailedMatches() {
+            return failedMatches;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+    }
+
+    private final Path directory;
+    private final Options options;
+    private final ByteBuffer packed = ByteBuffer.allocate(PackedPosition.BYTES);
+    private final Thread syncThread;
+    // segment number of the START of every match journaled and not detached
+    private final LongHashMap live = new LongHashMap();
+    private MappedByteBuffer segment;
+    private int segmentNumber;
+    // the oldest segment not deleted yet
+    private int oldestSegment;
+    private int position;
+    private int syncedPosition;
+    private long records;
+    private boolean closed;
+
+    private MoveJournal(Path directory, Options options, int firstSegment, int lastSegment) throws IOException {
+        this.directory = directory;
+        this.options = options;
+        newSegment(lastSegment + 1);
+        oldestSegment = firstSegment;
+        if (options.syncIntervalMillis > 0) {
+            syncThread = new Thread(this::syncPeriodically, "journal-sync");
+            syncThread.setDaemon(true);
+            syncThread.start();
+        } else {
+            syncThread = null;
+        }
+    }
+
+    public static MoveJournal open(Path directory, Options options) throws IOException {
+        Files.createDirectories(directory);
+        List<Path> segments = segments(directory);
+        if (segments.isEmpty()) {
+            return new MoveJournal(directory, options, 1, 0);
+        }
+        return new MoveJournal(directory, options, segmentNumber(segments.get(0)),
+                segmentNumber(segments.get(segments.size() - 1)));
+    }
+
+    // journals a new match from its current position on
+    public void attach(long matchId, ChessMatch match) {
+        synchronized (this) {
+            match.pack(packed.array(), 0);
+            appendStart(matchId, packed);
+        }
+        match.setMoveListener(new Recorder(matchId));
+    }
+
+    // goes on journaling a match rebuilt by recover, its earlier records are already in the journal and are
+    // kept from its START on; call it for every match to keep before moves are journaled
+    public ChessMatch resume(Recovery recovery, long matchId) {
+        ChessMatch match = recovery.getMatches().get(matchId);
+        if (match == null) {
+            throw new IllegalArgumentException("Match " + matchId + " wasn't recovered");
+        }
+        synchronized (this) {
+            live.put(matchId, recovery.getStartSegment(matchId));
+        }
+        match.setMoveListener(new Recorder(matchId));
+        return match;
+    }
+
+    // the match is over or abandoned, recovery won't rebuild it and its records can be deleted
+    public void detach(long matchId, ChessMatch match) {
+        match.setMoveListener(null);
+        append(matchId, END, 0, 0, 0);
+    }
+
+    // position holds a PackedPosition
+    synchronized void appendStart(long matchId, ByteBuffer position) {
+        reserve(1 + POSITION_RECORDS);
+        put(matchId, START << 24);
+        for (int i = 0; i < POSITION_RECORDS; i++) {
+            put(position.getLong(i * 8), POSITION << 24);
+        }
+        live.put(matchId, segmentNumber);
+        appended(1 + POSITION_RECORDS);
+    }
+
+    synchronized void append(long matchId, int type, int from, int to, int promotion) {
+        reserve(1);
+        put(matchId, type << 24 | from << 16 | to << 8 | promotion);
+        if (type == END) {
+            live.remove(matchId);
+        }
+        appended(1);
+    }
+
+    // segment files left, the one being written included
+    public synchronized int getSegments() {
+        return segmentNumber - oldestSegment + 1;
+    }
+
+    // forces the records appended so far to disk
+    public synchronized void sync() {
+        if (position > syncedPosition) {
+            segment.force(syncedPosition, position - syncedPosition);
+            syncedPosition = position;
+        }
+    }
+
+    public synchronized long getRecords() {
+        return records;
+    }
+
+    @Override
+    public void close() {
+        if (syncThread != null) {
+            syncThread.interrupt();
+            try {
+                syncThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            sync();
+            closed = true;
+        }
+    }
+
+    private void reserve(int count) {
+        if (closed) {
+            throw new IllegalStateException("The journal is closed");
+        }
+        if (position + count * RECORD_BYTES > segment.capacity()) {
+            sync();
+            try {
+                newSegment(segmentNumber + 1);
+                retire();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // deletes the segments before the oldest START of a match still journaled, recovery never reads them
+    private void retire() throws IOException {
+        int keep = (int) Math.min(live.minValue(), segmentNumber);
+        for (; oldestSegment < keep; oldestSegment++) {
+            Files.deleteIfExists(segmentPath(oldestSegment));
+        }
+    }
+
+    private Path segmentPath(int number) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    private void put(long first, int word) {
+        segment.putLong(position, first);
+        segment.putInt(position + 8, word);
+        segment.putInt(position + 12, checksum(first, word));
+        position += RECORD_BYTES;
+    }
+
+    private void appended(int count) {
+        records += count;
+        if (options.syncEvery > 0 && position - syncedPosition >= options.syncEvery * RECORD_BYTES) {
+            sync();
+        }
+    }
+
+    private void newSegment(int number) throws IOException {
+        Path path = segmentPath(number);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // the mapping stays valid after the channel is closed
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, options.segmentBytes);
+        }
+        segment.putLong(0, MAGIC);
+        segment.putLong(8, number);
+        segmentNumber = number;
+        position = RECORD_BYTES;
+        syncedPosition = 0;
+    }
+
+    private void syncPeriodically() {
+        while (true) {
+            try {
+                Thread.sleep(options.syncIntervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                sync();
+            }
+        }
+    }
+
+    // a record of zeros, as left by a write that never happened, fails the check through its type
+    static int checksum(long first, int word) {
+        long hash = (first ^ 0x9E3779B97F4A7C15L) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 31) ^ word) * 0x94D049BB133111EBL;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    static int type(int word) {
+        return word >>> 24;
+    }
+
+    private class Recorder implements MoveListener {
+        private final long matchId;
+
+        Recorder(long matchId) {
+            this.matchId = matchId;
+        }
+
+        @Override
+        public void movePerformed(ChessMatch match, ChessPosition source, ChessPosition target) {
+            append(matchId, MOVE, square(source), square(target), 0);
+        }
+
+        private int square(ChessPosition position) {
+            return BitBoard.square(8 - position.getRow(), position.getColumn() - 'a');
+        }
+
+        @Override
+        public void piecePromoted(ChessMatch match, String pieceType) {
+            append(matchId, PROMOTION, 0, 0, PIECE_LETTERS.indexOf(pieceType));
+        }
+
+        @Override
+        public void moveTakenBack(ChessMatch match) {
+            append(matchId, TAKE_BACK, 0, 0, 0);
+        }
+    }
+
+    // rebuilds the matches in progress. A first pass finds the matches that never ended and where they
+    // started, then only their records are replayed, on threads that each own the matches whose ids fall to
+    // them. A match never detached keeps the journal from its START on in every recovery.
+    public static Recovery recover(Path directory, int threads) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("A recovery needs at least one thread");
+        }
+        long start = System.nanoTime();
+        List<MappedByteBuffer> segments = new ArrayList<>();
+        List<Integer> numbers = new ArrayList<>();
+        List<Integer> lengths = new ArrayList<>();
+        // where the matches started and not ended yet begin, few at any time, so the lookups of the second
+        // pass stay in cache
+        LongHashMap live = new LongHashMap();
+        long ended = 0;
+        long records = 0;
+        if (Files.isDirectory(directory)) {
+            for (Path path : segments(directory)) {
+                MappedByteBuffer segment;
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    if (channel.size() < RECORD_BYTES || channel.size() > Integer.MAX_VALUE) {
+                        throw new IOException("Not a journal segment: " + path);
+                    }
+                    segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+                if (segment.getLong(0) != MAGIC) {
+                    throw new IOException("Not a journal segment: " + path);
+                }
+                // records up to the first torn one, or a START missing its position
+                int length = RECORD_BYTES;
+                int limit = segment.capacity() - RECORD_BYTES;
+                while (length <= limit && isValid(segment, length)) {
+                    int type = type(segment.getInt(length + 8));
+                    if (type == START) {
+                        if (!hasPosition(segment, length, limit)) {
+                            break;
+                        }
+                        live.put(segment.getLong(length), (long) segments.size() << 32 | length);
+                        length += POSITION_RECORDS * RECORD_BYTES;
+                    } else if (type == END && live.remove(segment.getLong(length))) {
+                        ended++;
+                    }
+                    length += RECORD_BYTES;
+                }
+                segments.add(segment);
+                numbers.add(segmentNumber(path));
+                lengths.add(length);
+                records += length / RECORD_BYTES - 1;
+            }
+        }
+
+        Replayer[] replayers = new Replayer[threads];
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            replayers[i] = new Replayer();
+            workers[i] = new Thread(replayers[i], "journal-replay-" + (i + 1));
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        long replayed = 0;
+        try {
+            // nothing before the oldest START of a live match needs to be read again
+            long first = live.minValue();
+            int firstSegment = first == Long.MAX_VALUE ? segments.size() : (int) (first >>> 32);
+            for (int s = firstSegment; s < segments.size(); s++) {
+                MappedByteBuffer segment = segments.get(s);
+                int length = lengths.get(s);
+                for (int offset = s == firstSegment ? (int) first : RECORD_BYTES; offset < length;
+                        offset += RECORD_BYTES) {
+                    long matchId = segment.getLong(offset);
+                    int word = segment.getInt(offset + 8);
+                    int type = type(word);
+                    if (type == POSITION) {
+                        // taken with the START they belong to
+                        continue;
+                    }
+                    if (!live.containsKey(matchId)) {
+                        continue;
+                    }
+                    Replayer replayer = replayers[(int) Math.floorMod(matchId ^ (matchId >>> 32), (long) threads)];
+                    if (type == START) {
+                        replayer.add(matchId, word, segment, offset + RECORD_BYTES);
+                    } else {
+                        replayer.add(matchId, word);
+                    }
+                    replayed++;
+                }
+            }
+            Map<Long, ChessMatch> matches = new HashMap<>();
+            Set<Long> failed = new HashSet<>();
+            for (int i = 0; i < threads; i++) {
+                replayers[i].finish();
+                workers[i].join();
+                if (replayers[i].failure != null) {
+                    throw replayers[i].failure;
+                }
+                matches.putAll(replayers[i].matches);
+                failed.addAll(replayers[i].failed);
+            }
+            Map<Long, Integer> startSegments = new HashMap<>();
+            for (long matchId : matches.keySet()) {
+                startSegments.put(matchId, numbers.get((int) (live.get(matchId, 0) >>> 32)));
+            }
+            return new Recovery(matches, startSegments, records, replayed, ended, failed,
+                    System.nanoTime() - start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Recovery interrupted");
+        } finally {
+            for (Thread worker : workers) {
+                worker.interrupt();
+            }
+        }
+    }
+
+    private static boolean hasPosition(MappedByteBuffer segment, int start, int limit) {
+        if (start + POSITION_RECORDS * RECORD_BYTES > limit) {
+            return false;
+        }
+        for (int i = 1; i <= POSITION_RECORDS; i++) {
+            int offset = start + i * RECORD_BYTES;
+            if (!isValid(segment, offset) || type(segment.getInt(offset + 8)) != POSITION) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isValid(MappedByteBuffer segment, int offset) {
+        long first = segment.getLong(offset);
+        int word = segment.getInt(offset + 8);
+        int type = type(word);
+        return type >= START && type <= END && segment.getInt(offset + 12) == checksum(first, word);
+    }
+
+    private static List<Path> segments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                segments.add(path);
+            }
+        }
+        segments.sort((a, b) -> Integer.compare(segmentNumber(a), segmentNumber(b)));
+        return segments;
+    }
+
+    private static int segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    // replays the records of its own matches in journal order, fed in batches by the reading thread
+    private static class Replayer implements Runnable {
+        private static final int BATCH = 4096;
+        private static final long[] DONE = new long[0];
+
+        final Map<Long, ChessMatch> matches = new HashMap<>();
+        final Set<Long> failed = new HashSet<>();
+        volatile Error failure;
+        private final BlockingQueue<long[]> queue = new ArrayBlockingQueue<>(8);
+        // pairs of match id and record word, a START is followed by its packed position as four pairs
+        private long[] batch = new long[BATCH * 2];
+        private int size;
+
+        void add(long matchId, int word) throws InterruptedException {
+            if (size + 2 > batch.length) {
+                flush();
+            }
+            batch[size++] = matchId;
+            batch[size++] = word;
+        }
+
+        void add(long matchId, int word, MappedByteBuffer segment, int positionOffset)
+                throws InterruptedException {
+            if (size + 2 * (1 + POSITION_RECORDS) > batch.length) {
+                flush();
+            }
+            batch[size++] = matchId;
+            batch[size++] = word;
+            for (int i = 0; i < POSITION_RECORDS; i++) {
+                batch[size++] = segment.getLong(positionOffset + i * RECORD_BYTES);
+                batch[size++] = POSITION << 24;
+            }
+        }
+
+        void finish() throws InterruptedException {
+            flush();
+            queue.put(DONE);
+        }
+
+        private void flush() throws InterruptedException {
+            if (size > 0) {
+                long[] full = batch.length == size ? batch : Arrays.copyOf(batch, size);
+                queue.put(full);
+                batch = new long[BATCH * 2];
+                size = 0;
+            }
+        }
+
+        @Override
+        public void run() {
+            ByteBuffer packed = ByteBuffer.allocate(PackedPosition.BYTES);
+            try {
+                long[] records;
+                while ((records = queue.take()) != DONE) {
+                    for (int i = 0; i < records.length; i += 2) {
+                        long matchId = records[i];
+                        int word = (int) records[i + 1];
+                        if (type(word) == START) {
+                            for (int j = 0; j < POSITION_RECORDS; j++) {
+                                packed.putLong(j * 8, records[i + 2 + j * 2]);
+                            }
+                            i += POSITION_RECORDS * 2;
+                        }
+                        if (type(word) == START) {
+                            failed.remove(matchId);
+                        }
+                        if (!failed.contains(matchId)) {
+                            replay(matchId, word, packed);
+                        }
+                    }
+                }
+            } catch (Error e) {
+                // most likely too many matches for the heap, rethrown by recover once the reading thread,
+                // which may be waiting on this queue, is done
+                failure = e;
+                matches.clear();
+                try {
+                    while (queue.take() != DONE) {
+                        // discarded
+                    }
+                } catch (InterruptedException interrupted) {
+                    // recovery gave up
+                }
+            } catch (InterruptedException e) {
+                // recovery gave up
+            }
+        }
+
+        private void replay(long matchId, int word, ByteBuffer packed) {
+            try {
+                int type = type(word);
+                if (type == START) {
+                    matches.put(matchId, new ChessMatch(packed.array(), 0));
+                    return;
+                }
+                ChessMatch match = matches.get(matchId);
+                if (match == null) {
+                    // an earlier match with the same id, from before the START the replay began at
+                    return;
+                }
+                if (type == MOVE) {
+                    match.perfomeChessMove(chessPosition(word >>> 16 & 0xFF), chessPosition(word >>> 8 & 0xFF));
+                } else if (type == PROMOTION) {
+                    match.replacePrometedPiece(String.valueOf(PIECE_LETTERS.charAt(word & 0xFF)));
+                } else if (type == TAKE_BACK) {
+                    match.takeBack();
+                } else if (type == END) {
+                    matches.remove(matchId);
+                }
+            } catch (RuntimeException e) {
+                matches.remove(matchId);
+                failed.add(matchId);
+            }
+        }
+
+        private static ChessPosition chessPosition(int square) {
+            return new ChessPosition((char) ('a' + BitBoard.column(square)), 8 - BitBoard.row(square));
+        }
+    }
+}
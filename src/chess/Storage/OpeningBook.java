@@ -0,0 +1,108 @@
+package chess.Storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import chess.Move;
+
+// A memory-mapped opening book: a header followed by 16 byte entries (Zobrist key, move, weight) sorted by
+// key, and by weight within a key. Lookups binary search the mapping directly and allocate nothing.
+// Keys come from chess.Zobrist, so a book only fits engines built with the same keys.
+public class OpeningBook {
+    static final long MAGIC = 0x43484553534B4231L; // "CHESSKB1"
+    static final int HEADER_BYTES = 16;
+    static final int ENTRY_BYTES = 16;
+
+    private final MappedByteBuffer buffer;
+    private final int entries;
+
+    private OpeningBook(MappedByteBuffer buffer, int entries) {
+        this.buffer = buffer;
+        this.entries = entries;
+    }
+
+    public static OpeningBook open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Not an opening book: " + path);
+            }
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            long entries = buffer.getLong(8);
+            if (buffer.getLong(0) != MAGIC || entries < 0 || HEADER_BYTES + entries * ENTRY_BYTES != size) {
+                throw new IOException("Not an opening book: " + path);
+            }
+            return new OpeningBook(buffer, (int) entries);
+        }
+    }
+
+    public int size() {
+        return entries;
+    }
+
+    // index of the first entry of the position, or -1 when the book doesn't know it
+    public int find(long key) {
+        int low = 0;
+        int high = entries - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = Long.compare(key(middle), key);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low < entries && key(low) == key ? low : -1;
+    }
+
+    public long key(int index) {
+        return buffer.getLong(HEADER_BYTES + index * ENTRY_BYTES);
+    }
+
+    public int move(int index) {
+        return buffer.getInt(HEADER_BYTES + index * ENTRY_BYTES + 8);
+    }
+
+    public int weight(int index) {
+        return buffer.getInt(HEADER_BYTES + index * ENTRY_BYTES + 12);
+    }
+
+    // the most played move of the position, Move.NONE when it isn't in the book
+    public int bestMove(long key) {
+        int index = find(key);
+        return index < 0 ? Move.NONE : move(index);
+    }
+
+    // picks a move with probability proportional to its weight, fraction is uniform in [0, 1)
+    public int pickMove(long key, double fraction) {
+        int first = find(key);
+        if (first < 0) {
+            return Move.NONE;
+        }
+        long total = 0;
+        int end = first;
+        for (; end < entries && key(end) == key; end++) {
+            total += weight(end);
+        }
+        long target = (long) (fraction * total);
+        for (int i = first; i < end; i++) {
+            target -= weight(i);
+            if (target < 0) {
+                return move(i);
+            }
+        }
+        return move(first);
+    }
+
+    static ByteBuffer header(long entries) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putLong(MAGIC).putLong(entries).flip();
+        return header;
+    }
+}
@@ -0,0 +1,159 @@
+package chess.Storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import chess.BitBoard;
+import chess.Fen;
+import chess.San;
+
+// Builds an OpeningBook from PGN games. Every move of the first plies of a game adds to its weight:
+// 2 when the side that played it went on to win, 1 for a draw or an unknown result, 0 for a loss.
+public class OpeningBookBuilder {
+    private final int maxPlies;
+    private final Map<Long, Map<Integer, Integer>> positions = new HashMap<>();
+    private long games;
+    private long errors;
+
+    public OpeningBookBuilder(int maxPlies) {
+        if (maxPlies < 1) {
+            throw new IllegalArgumentException("The book needs at least one ply per game");
+        }
+        this.maxPlies = maxPlies;
+    }
+
+    // false when the game has an illegal or unreadable move, the plies before it are still counted
+    public boolean add(PgnGame game) {
+        games++;
+        BitBoard bitBoard = new BitBoard();
+        try {
+            Fen.load(game.getStartingFen(), bitBoard);
+            List<String> moves = game.getMoves();
+            for (int ply = 0; ply < Math.min(maxPlies, moves.size()); ply++) {
+                int move = San.parse(moves.get(ply), bitBoard);
+                int weight = weight(game.getResult(), bitBoard.getSideToMove());
+                positions.computeIfAbsent(bitBoard.getKey(), key -> new HashMap<>()).merge(move, weight,
+                        Integer::sum);
+                bitBoard.makeMove(move);
+            }
+            return true;
+        } catch (RuntimeException e) {
+            // whatever the failure, it's this game's, the build goes on without it
+            errors++;
+            return false;
+        }
+    }
+
+    public void addAll(PgnReader reader) throws IOException {
+        PgnGame game;
+        while ((game = reader.next()) != null) {
+            add(game);
+        }
+    }
+
+    // writes the entries with at least minWeight and returns how many were written
+    public int write(Path path, int minWeight) throws IOException {
+        long[] keys = new long[positions.size()];
+        int i = 0;
+        for (long key : positions.keySet()) {
+            keys[i++] = key;
+        }
+        Arrays.sort(keys);
+
+        List<long[]> entries = new ArrayList<>();
+        for (long key : keys) {
+            List<Map.Entry<Integer, Integer>> moves = new ArrayList<>(positions.get(key).entrySet());
+            moves.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+            for (Map.Entry<Integer, Integer> move : moves) {
+                if (move.getValue() >= minWeight) {
+                    entries.add(new long[] { key, move.getKey(), move.getValue() });
+                }
+            }
+        }
+        if (entries.size() > (Integer.MAX_VALUE - OpeningBook.HEADER_BYTES) / OpeningBook.ENTRY_BYTES) {
+            throw new IOException("Too many book entries: " + entries.size());
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(OpeningBook.header(entries.size()));
+            ByteBuffer buffer = ByteBuffer.allocate(OpeningBook.ENTRY_BYTES * 4096);
+            for (long[] entry : entries) {
+                if (!buffer.hasRemaining()) {
+                    flush(channel, buffer);
+                }
+                buffer.putLong(entry[0]).putInt((int) entry[1]).putInt((int) entry[2]);
+            }
+            flush(channel, buffer);
+        }
+        return entries.size();
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public int getPositions() {
+        return positions.size();
+    }
+
+    private static int weight(String result, int mover) {
+        String win = mover == BitBoard.WHITE ? "1-0" : "0-1";
+        String loss = mover == BitBoard.WHITE ? "0-1" : "1-0";
+        return result.equals(win) ? 2 : result.equals(loss) ? 0 : 1;
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // usage: OpeningBookBuilder <book file> <pgn file>... [--plies n] [--min-weight n]
+    public static void main(String[] args) throws IOException {
+        int plies = 16;
+        int minWeight = 1;
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--plies") && i + 1 < args.length) {
+                plies = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--min-weight") && i + 1 < args.length) {
+                minWeight = Integer.parseInt(args[++i]);
+            } else {
+                files.add(args[i]);
+            }
+        }
+        if (files.size() < 2) {
+            System.out.println("usage: OpeningBookBuilder <book file> <pgn file>... [--plies n] [--min-weight n]");
+            return;
+        }
+        OpeningBookBuilder builder = new OpeningBookBuilder(plies);
+        long start = System.nanoTime();
+        for (String file : files.subList(1, files.size())) {
+            try (PgnReader reader = new PgnReader(Files.newBufferedReader(Paths.get(file),
+                    StandardCharsets.ISO_8859_1))) {
+                builder.addAll(reader);
+            }
+        }
+        int entries = builder.write(Paths.get(files.get(0)), minWeight);
+        System.out.printf("games %,d  errors %,d  positions %,d  entries %,d  time %d ms%n", builder.getGames(),
+                builder.getErrors(), builder.getPositions(), entries, (System.nanoTime() - start) / 1_000_000);
+    }
+}
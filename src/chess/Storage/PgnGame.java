@@ -0,0 +1,42 @@
+package chess.Storage;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import chess.Fen;
+
+// One game of a PGN file: its tag pairs and the SAN moves of the main line, variations and comments dropped.
+public class PgnGame {
+    private final Map<String, String> tags;
+    private final List<String> moves;
+    private final String result;
+
+    public PgnGame(Map<String, String> tags, List<String> moves, String result) {
+        this.tags = Collections.unmodifiableMap(tags);
+        this.moves = Collections.unmodifiableList(moves);
+        this.result = result;
+    }
+
+    public Map<String, String> getTags() {
+        return tags;
+    }
+
+    public String getTag(String name) {
+        return tags.get(name);
+    }
+
+    public List<String> getMoves() {
+        return moves;
+    }
+
+    // "1-0", "0-1", "1/2-1/2" or "*" when unknown
+    public String getResult() {
+        return result;
+    }
+
+    public String getStartingFen() {
+        String fen = tags.get("FEN");
+        return fen != null ? fen : Fen.INITIAL;
+    }
+}
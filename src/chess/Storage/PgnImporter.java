@@ -0,0 +1,357 @@
+package chess.Storage;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringReader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import chess.ChessMatch;
+
+// Imports PGN files of any size. The file is memory-mapped a window at a time and split into games by
+// scanning for the tag section that follows a game's movetext, then batches of games are replayed on a pool,
+// every move going through ChessMatch so it is checked exactly like a move typed by a player. Illegal and
+// unreadable games are reported and skipped, they never stop the import.
+public class PgnImporter {
+    private static final long WINDOW_BYTES = 256L << 20;
+    private static final int BATCH_GAMES = 256;
+    // batches handed out per thread before the splitter waits, so a fast disk can't flood the heap
+    private static final int BATCHES_PER_THREAD = 4;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    // called on the pool threads for every game that replayed without an error
+    public interface GameHandler {
+        void accept(long gameNumber, PgnGame game);
+    }
+
+    public static class ImportError {
+        private final long gameNumber;
+        private final long offset;
+        private final String message;
+
+        ImportError(long gameNumber, long offset, String message) {
+            this.gameNumber = gameNumber;
+            this.offset = offset;
+            this.message = message;
+        }
+
+        // games are numbered from 1 in file order
+        public long getGameNumber() {
+            return gameNumber;
+        }
+
+        // byte offset of the game in the file
+        public long getOffset() {
+            return offset;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "game " + gameNumber + " at byte " + offset + ": " + message;
+        }
+    }
+
+    public static class Report {
+        private final long games;
+        private final long moves;
+        private final long bytes;
+        private final long elapsedNanos;
+        private final long errorCount;
+        private final List<ImportError> errors;
+
+        Report(long games, long moves, long bytes, long elapsedNanos, long errorCount, List<ImportError> errors) {
+            this.games = games;
+            this.moves = moves;
+            this.bytes = bytes;
+            this.elapsedNanos = elapsedNanos;
+            this.errorCount = errorCount;
+            this.errors = errors;
+        }
+
+        public long getGames() {
+            return games;
+        }
+
+        public long getValidGames() {
+            return games - errorCount;
+        }
+
+        public long getMoves() {
+            return moves;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getGamesPerSecond() {
+            return games * 1e9 / Math.max(elapsedNanos, 1);
+        }
+
+        public long getErrorCount() {
+            return errorCount;
+        }
+
+        // the first errors in file order, at most MAX_REPORTED_ERRORS of them
+        public List<ImportError> getErrors() {
+            return errors;
+        }
+    }
+
+    private final int threads;
+    private GameHandler handler;
+
+    public PgnImporter(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("An import needs at least one thread");
+        }
+        this.threads = threads;
+    }
+
+    public void setHandler(GameHandler handler) {
+        this.handler = handler;
+    }
+
+    public Report importFile(Path path) throws IOException {
+        long start = System.nanoTime();
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "pgn-import-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Semaphore permits = new Semaphore(threads * BATCHES_PER_THREAD);
+        Counters counters = new Counters();
+        long games = 0;
+        long size;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            size = channel.size();
+            long windowStart = 0;
+            while (windowStart < size) {
+                long windowSize = Math.min(WINDOW_BYTES, size - windowStart);
+                boolean last = windowStart + windowSize == size;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowSize);
+                int[] offsets = new int[BATCH_GAMES + 1];
+                int count = 0;
+                int gameStart = 0;
+                int end = (int) windowSize;
+                int next;
+                while ((next = nextGame(buffer, gameStart, end)) < end || last) {
+                    // white space after the last game isn't a game
+                    if (!isBlank(buffer, gameStart, next)) {
+                        offsets[count++] = gameStart;
+                        if (count == BATCH_GAMES) {
+                            offsets[count] = next;
+                            submit(executor, permits, new Batch(buffer, windowStart, offsets, count, games + 1),
+                                    counters);
+                            games += count;
+                            offsets = new int[BATCH_GAMES + 1];
+                            count = 0;
+                        }
+                    }
+                    gameStart = next;
+                    if (next == end) {
+                        break;
+                    }
+                }
+                if (gameStart == 0 && !last) {
+                    // no game ends in the window, it's cut at the window end and reported as broken
+                    offsets[count++] = 0;
+                    gameStart = end;
+                }
+                if (count > 0) {
+                    offsets[count] = gameStart;
+                    submit(executor, permits, new Batch(buffer, windowStart, offsets, count, games + 1), counters);
+                    games += count;
+                }
+                // the game the window cuts through starts the next window
+                windowStart += gameStart;
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import interrupted");
+        } finally {
+            executor.shutdownNow();
+        }
+        List<ImportError> errors = new ArrayList<>(counters.errors);
+        errors.sort(Comparator.comparingLong(ImportError::getGameNumber));
+        return new Report(games, counters.moves.get(), size, System.nanoTime() - start, counters.errorCount.get(),
+                errors);
+    }
+
+    private void submit(ExecutorService executor, Semaphore permits, Batch batch, Counters counters)
+            throws InterruptedException {
+        permits.acquire();
+        executor.execute(() -> {
+            try {
+                for (int i = 0; i < batch.count; i++) {
+                    replay(batch, i, counters);
+                }
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    private void replay(Batch batch, int index, Counters counters) {
+        long gameNumber = batch.firstGame + index;
+        int from = batch.offsets[index];
+        byte[] bytes = new byte[batch.offsets[index + 1] - from];
+        batch.buffer.get(from, bytes);
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        PgnGame game;
+        List<String> moves = List.of();
+        int ply = 0;
+        try (PgnReader reader = new PgnReader(new StringReader(text))) {
+            game = reader.next();
+            if (game == null) {
+                counters.error(new ImportError(gameNumber, batch.windowStart + from, "No game"));
+                return;
+            }
+            ChessMatch match = new ChessMatch(game.getStartingFen());
+            moves = game.getMoves();
+            for (; ply < moves.size(); ply++) {
+                match.perfomeSanMove(moves.get(ply));
+            }
+            counters.moves.addAndGet(moves.size());
+        } catch (IOException e) {
+            // a StringReader doesn't fail
+            throw new IllegalStateException(e);
+        } catch (RuntimeException e) {
+            // any failure is the game's, a broken FEN tag or move must not take the rest of the batch with it
+            String message = e.getMessage() != null ? e.getMessage() : e.toString();
+            counters.error(new ImportError(gameNumber, batch.windowStart + from,
+                    ply < moves.size() ? "ply " + (ply + 1) + " " + moves.get(ply) + ": " + message : message));
+            return;
+        }
+        if (handler != null) {
+            handler.accept(gameNumber, game);
+        }
+    }
+
+    // the start of the game after the one starting at from: the first tag line following movetext, or end
+    static int nextGame(MappedByteBuffer buffer, int from, int end) {
+        boolean movetext = false;
+        boolean comment = false;
+        int i = from;
+        while (i < end) {
+            byte first = buffer.get(i);
+            if (!comment && first == '[' && movetext) {
+                return i;
+            }
+            // the rest of the line
+            while (i < end) {
+                byte c = buffer.get(i++);
+                if (c == '\n') {
+                    break;
+                }
+                if (first == '[' && !comment) {
+                    continue;
+                }
+                if (c == '{') {
+                    comment = true;
+                } else if (c == '}') {
+                    comment = false;
+                } else if (!comment && c > ' ') {
+                    movetext = true;
+                }
+            }
+        }
+        return end;
+    }
+
+    private static boolean isBlank(MappedByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class Batch {
+        final MappedByteBuffer buffer;
+        final long windowStart;
+        // start of each game in the buffer, plus the end of the last one
+        final int[] offsets;
+        final int count;
+        final long firstGame;
+
+        Batch(MappedByteBuffer buffer, long windowStart, int[] offsets, int count, long firstGame) {
+            this.buffer = buffer;
+            this.windowStart = windowStart;
+            this.offsets = offsets;
+            this.count = count;
+            this.firstGame = firstGame;
+        }
+    }
+
+    private static class Counters {
+        final AtomicLong moves = new AtomicLong();
+        final AtomicLong errorCount = new AtomicLong();
+        // the errors of the first games seen so far, the latest game on top so it is the one dropped
+        final PriorityQueue<ImportError> errors = new PriorityQueue<>(
+                Comparator.comparingLong(ImportError::getGameNumber).reversed());
+
+        void error(ImportError error) {
+            errorCount.incrementAndGet();
+            synchronized (errors) {
+                errors.add(error);
+                if (errors.size() > MAX_REPORTED_ERRORS) {
+                    errors.poll();
+                }
+            }
+        }
+    }
+
+    // usage: PgnImporter <pgn files...> [--threads n]
+    public static void main(String[] args) throws IOException {
+        List<Path> files = new ArrayList<>();
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else {
+                files.add(Paths.get(args[i]));
+            }
+        }
+        if (files.isEmpty()) {
+            System.out.println("usage: PgnImporter <pgn files...> [--threads n]");
+            return;
+        }
+        PgnImporter importer = new PgnImporter(threads);
+        for (Path file : files) {
+            Report report = importer.importFile(file);
+            System.out.printf("%s: %,d games, %,d moves, %,d errors in %.2f s, %,.0f games/s, %.1f MB/s%n", file,
+                    report.getGames(), report.getMoves(), report.getErrorCount(), report.getElapsedNanos() / 1e9,
+                    report.getGamesPerSecond(), report.getBytes() / 1e6 / (report.getElapsedNanos() / 1e9));
+            for (ImportError error : report.getErrors()) {
+                System.out.println("  " + error);
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package chess.Storage;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Reads the games of a PGN stream one at a time, so collections far larger than the heap can be processed.
+public class PgnReader implements Closeable {
+    private final BufferedReader reader;
+    private String pendingLine;
+
+    // movetext state of the game being read
+    private boolean inComment;
+    private int variationDepth;
+
+    public PgnReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    // the next game, or null at the end of the stream
+    public PgnGame next() throws IOException {
+        Map<String, String> tags = new LinkedHashMap<>();
+        List<String> moves = new ArrayList<>();
+        inComment = false;
+        variationDepth = 0;
+        String line;
+        while ((line = nextLine()) != null) {
+            if (!inComment && variationDepth == 0 && line.startsWith("[")) {
+                if (!moves.isEmpty()) {
+                    // a new tag section before a result token, the previous game had none
+                    pendingLine = line;
+                    return new PgnGame(tags, moves, "*");
+                }
+                parseTag(line, tags);
+                continue;
+            }
+            String result = parseMovetext(line, moves);
+            if (result != null) {
+                return new PgnGame(tags, moves, result);
+            }
+        }
+        if (tags.isEmpty() && moves.isEmpty()) {
+            return null;
+        }
+        return new PgnGame(tags, moves, "*");
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private String nextLine() throws IOException {
+        if (pendingLine != null) {
+            String line = pendingLine;
+            pendingLine = null;
+            return line;
+        }
+        return reader.readLine();
+    }
+
+    private static void parseTag(String line, Map<String, String> tags) {
+        int space = line.indexOf(' ');
+        int open = line.indexOf('"');
+        int close = line.lastIndexOf('"');
+        if (space > 1 && open > space && close > open) {
+            tags.put(line.substring(1, space), line.substring(open + 1, close).replace("\\\"", "\""));
+        }
+    }
+
+    // adds the main line moves of the line and returns the result token if the game ends on it
+    private String parseMovetext(String line, List<String> moves) {
+        int i = 0;
+        int length = line.length();
+        while (i < length) {
+            char c = line.charAt(i);
+            if (inComment) {
+                if (c == '}') {
+                    inComment = false;
+                }
+                i++;
+            } else if (c == '{') {
+                inComment = true;
+                i++;
+            } else if (c == ';' || (c == '%' && i == 0)) {
+                return null;
+            } else if (c == '(') {
+                variationDepth++;
+                i++;
+            } else if (c == ')') {
+                variationDepth = Math.max(0, variationDepth - 1);
+                i++;
+            } else if (Character.isWhitespace(c)) {
+                i++;
+            } else {
+                int end = i;
+                while (end < length && "{}();".indexOf(line.charAt(end)) < 0
+                        && !Character.isWhitespace(line.charAt(end))) {
+                    end++;
+                }
+                String token = line.substring(i, end);
+                i = end;
+                if (variationDepth > 0 || token.startsWith("$")) {
+                    continue;
+                }
+                if (token.equals("1-0") || token.equals("0-1") || token.equals("1/2-1/2") || token.equals("*")) {
+                    return token;
+                }
+                // move numbers, possibly glued to the move as in "12.e4" or "12...Nf6"
+                int digits = 0;
+                while (digits < token.length() && Character.isDigit(token.charAt(digits))) {
+                    digits++;
+                }
+                int dots = digits;
+                while (dots < token.length() && token.charAt(dots) == '.') {
+                    dots++;
+                }
+                if (dots > digits) {
+                    token = token.substring(dots);
+                }
+                if (!token.isEmpty()) {
+                    moves.add(token);
+                }
+            }
+        }
+        return null;
+    }
+}
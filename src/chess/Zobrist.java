@@ -0,0 +1,47 @@
+package chess;
+
+import java.util.SplittableRandom;
+
+public class Zobrist {
+    private static final long[][] PIECES = new long[12][64];
+    private static final long[] CASTLING = new long[16];
+    private static final long[] EN_PASSANT_FILES = new long[8];
+    private static final long SIDE;
+
+    static {
+        // fixed seed, so keys stay stable across runs and can be stored
+        SplittableRandom random = new SplittableRandom(0x5DEECE66DL);
+        for (int code = 0; code < 12; code++) {
+            for (int square = 0; square < 64; square++) {
+                PIECES[code][square] = random.nextLong();
+            }
+        }
+        for (int i = 0; i < 16; i++) {
+            CASTLING[i] = random.nextLong();
+        }
+        for (int i = 0; i < 8; i++) {
+            EN_PASSANT_FILES[i] = random.nextLong();
+        }
+        SIDE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    public static long piece(int code, int square) {
+        return PIECES[code][square];
+    }
+
+    public static long castling(int castlingRights) {
+        return CASTLING[castlingRights];
+    }
+
+    public static long enPassant(int enPassantSquare) {
+        return enPassantSquare == BitBoard.EMPTY ? 0 : EN_PASSANT_FILES[BitBoard.column(enPassantSquare)];
+    }
+
+    // toggled whenever black is to move
+    public static long side() {
+        return SIDE;
+    }
+}
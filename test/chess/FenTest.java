@@ -0,0 +1,93 @@
+package chess;
+
+// Checks run as a plain program, no test framework is needed: FenTest exits with an error on the first failure.
+public class FenTest {
+    public static void main(String[] args) {
+        castlingRightsWithoutRookAreDropped();
+        castlingNeedsTheRook();
+        castlingStillWorks();
+        ranksMustFillEightFiles();
+        enPassantSquareMustFollowADoublePush();
+        moveCountersMustBeInRange();
+        System.out.println("FenTest passed");
+    }
+
+    static void castlingRightsWithoutRookAreDropped() {
+        BitBoard bitBoard = new BitBoard();
+        Fen.load("4k3/8/8/8/8/8/8/4K3 w K - 0 1", bitBoard);
+        check(bitBoard.getCastlingRights() == 0, "right kept without a rook");
+        check(Fen.toFen(bitBoard).equals("4k3/8/8/8/8/8/8/4K3 w - - 0 1"), Fen.toFen(bitBoard));
+
+        ChessMatch match = new ChessMatch("4k3/8/8/8/8/8/8/4K3 w K - 0 1");
+        try {
+            match.perfomeSanMove("O-O");
+            check(false, "castled without a rook");
+        } catch (ChessException e) {
+            // expected
+        }
+    }
+
+    static void castlingNeedsTheRook() {
+        BitBoard bitBoard = new BitBoard();
+        Fen.load("4k3/8/8/8/8/8/8/4K3 w - - 0 1", bitBoard);
+        // rights set by hand bypass Fen
+        bitBoard.setCastlingRights(BitBoard.WHITE_KINGSIDE | BitBoard.WHITE_QUEENSIDE);
+        check(bitBoard.castlingTargets(BitBoard.WHITE) == 0, "castling generated without a rook");
+    }
+
+    static void castlingStillWorks() {
+        BitBoard bitBoard = new BitBoard();
+        Fen.load("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1", bitBoard);
+        check(bitBoard.getCastlingRights() == BitBoard.ALL_CASTLING, "rights lost");
+        check(Long.bitCount(bitBoard.castlingTargets(BitBoard.WHITE)) == 2, "castling missing");
+        ChessMatch match = new ChessMatch("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1");
+        match.perfomeSanMove("O-O");
+        match.perfomeSanMove("O-O-O");
+        check(match.toFen().equals("2kr3r/8/8/8/8/8/8/R4RK1 w - - 2 2"), match.toFen());
+    }
+
+    static void ranksMustFillEightFiles() {
+        rejected("4k3/8/8/8/8/8/7/4K3 w - - 0 1");
+        rejected("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBN w KQkq - 0 1");
+        rejected("4k3/8/8/8/8/8/8/4K4 w - - 0 1");
+        rejected("4k3/8/8/8/8/8/8/44K w - - 0 1");
+        rejected("4k3/8/8/8/8/8/8/4K2R1 w - - 0 1");
+    }
+
+    static void enPassantSquareMustFollowADoublePush() {
+        // no pawn was pushed past d5
+        rejected("4k3/8/8/8/4P3/8/8/4K3 w - d5 0 1");
+        // wrong rank for the side to move
+        rejected("4k3/8/8/3pP3/8/8/8/4K3 b - d6 0 1");
+        rejected("4k3/8/8/8/3Pp3/8/8/4K3 w - d3 0 1");
+        // the skipped square is taken
+        rejected("4k3/8/3n4/3pP3/8/8/8/4K3 w - d6 0 1");
+
+        BitBoard bitBoard = new BitBoard();
+        Fen.load("4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 1", bitBoard);
+        check(bitBoard.getEnPassantSquare() == Fen.parseSquare("d6"), "en passant square lost");
+        Fen.load("4k3/8/8/8/3Pp3/8/8/4K3 b - d3 0 1", bitBoard);
+        check(bitBoard.getEnPassantSquare() == Fen.parseSquare("d3"), "en passant square lost");
+    }
+
+    static void moveCountersMustBeInRange() {
+        rejected("4k3/8/8/8/4P3/8/8/4K3 w - - -5 1");
+        rejected("4k3/8/8/8/4P3/8/8/4K3 w - - 0 0");
+        rejected("4k3/8/8/8/4P3/8/8/4K3 w - - 0 -3");
+    }
+
+    static void rejected(String fen) {
+        try {
+            Fen.load(fen, new BitBoard());
+        } catch (ChessException e) {
+            return;
+        }
+        throw new AssertionError("accepted " + fen);
+    }
+
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package chess.Storage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Checks run as a plain program, see chess.FenTest.
+public class PgnImporterTest {
+    public static void main(String[] args) throws IOException {
+        badGamesAreReportedAndSkipped();
+        System.out.println("PgnImporterTest passed");
+    }
+
+    // a broken game between good ones is reported without losing the games around it
+    static void badGamesAreReportedAndSkipped() throws IOException {
+        String pgn = "[Event \"good\"]\n\n1. e4 e5 2. Nf3 Nc6 1-0\n\n"
+                + "[Event \"no rook\"]\n[FEN \"4k3/8/8/8/8/8/8/4K3 w K - 0 1\"]\n\n1. O-O *\n\n"
+                + "[Event \"broken fen\"]\n[FEN \"4k3/8/8 w\"]\n\n1. Kd2 *\n\n"
+                + "[Event \"illegal\"]\n\n1. e4 e5 2. Ke3 *\n\n"
+                + "[Event \"good\"]\n\n1. d4 d5 2. c4 1/2-1/2\n";
+        Path file = Files.createTempFile("import", ".pgn");
+        try {
+            Files.writeString(file, pgn);
+            Set<Long> accepted = ConcurrentHashMap.newKeySet();
+            PgnImporter importer = new PgnImporter(2);
+            importer.setHandler((gameNumber, game) -> accepted.add(gameNumber));
+            PgnImporter.Report report = importer.importFile(file);
+
+            check(report.getGames() == 5, "games " + report.getGames());
+            check(report.getErrorCount() == 3, "errors " + report.getErrorCount());
+            check(report.getMoves() == 7, "moves " + report.getMoves());
+            check(accepted.equals(Set.of(1L, 5L)), "accepted " + accepted);
+            List<PgnImporter.ImportError> errors = report.getErrors();
+            check(errors.get(0).getGameNumber() == 2 && errors.get(1).getGameNumber() == 3
+                    && errors.get(2).getGameNumber() == 4, "errors " + errors);
+            check(errors.get(2).getMessage().startsWith("ply 3 Ke3"), errors.get(2).getMessage());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}